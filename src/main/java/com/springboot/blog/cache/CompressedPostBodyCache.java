@@ -0,0 +1,99 @@
+package com.springboot.blog.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.springboot.blog.payload.PostDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+// Gzip compressed JSON bodies of hot posts, per representation and tagged with the version of the post
+// they were serialized from. A hit is written to the response as is, without serializing or compressing
+// again. The cache is bounded by the total compressed size, not by the number of posts, and its entries expire
+// with the post cache so that the view and comment counts, which do not change the version, are as old as in
+// the identity body.
+@Component
+public class CompressedPostBodyCache {
+
+    public static final String POST_V1 = "post-v1";
+    public static final String POST_V2 = "post-v2";
+
+    private Cache<String, CompressedBody> cache;
+    private ObjectMapper objectMapper;
+
+    public CompressedPostBodyCache(@Value("${app.compressed-post-cache-maximum-bytes:67108864}") long maximumBytes,
+                                   @Value("${app.compressed-post-cache-ttl:10m}") Duration ttl,
+                                   ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String key, CompressedBody body) -> body.gzip.length)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "compressedPostBodies");
+    }
+
+    // gzip body of the post at the given version, the post is only loaded and serialized when that version is
+    // not cached. The body is tagged with the version of the post it was made of, which differs from the
+    // requested one when a write committed in between, so a body is never cached under a version it does not show.
+    public CompressedBody getGzip(long postId, String representation, String versionTag, Supplier<PostDto> post,
+                                  Function<PostDto, Object> body){
+        String key = key(postId, representation);
+        CompressedBody cached = cache.getIfPresent(key);
+        if(cached != null && cached.versionTag.equals(versionTag)){
+            return cached;
+        }
+        PostDto postDto = post.get();
+        CompressedBody compressed = new CompressedBody(postDto.getVersionTag(), compress(body.apply(postDto)));
+        cache.put(key, compressed);
+        return compressed;
+    }
+
+    public void evict(long postId){
+        cache.invalidateAll(List.of(key(postId, POST_V1), key(postId, POST_V2)));
+    }
+
+    private byte[] compress(Object body){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(GZIPOutputStream gzip = new GZIPOutputStream(bytes)){
+            objectMapper.writeValue(gzip, body);
+        }catch (IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String key(long postId, String representation){
+        return postId + ":" + representation;
+    }
+
+    public static class CompressedBody {
+        private final String versionTag;
+        private final byte[] gzip;
+
+        private CompressedBody(String versionTag, byte[] gzip) {
+            this.versionTag = versionTag;
+            this.gzip = gzip;
+        }
+
+        public String getVersionTag() {
+            return versionTag;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.springboot.blog.cache;
+
+import com.springboot.blog.exception.BlogAPIException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Collapses concurrent loads of the same key into one: the first caller runs the loader on its own thread,
+// the others wait for its result, or its exception, instead of going to the database themselves. Meant for
+// cache misses of hot entries, where a burst of requests would otherwise run the same query many times.
+@Component
+public class SingleFlight {
+
+    private final long timeout;
+    private final MeterRegistry meterRegistry;
+
+    public SingleFlight(@Value("${app.single-flight.timeout-milliseconds:5000}") long timeout,
+                        MeterRegistry meterRegistry) {
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // one group per kind of entry, keys are only collapsed within a group
+    public <K, V> Group<K, V> group(String name){
+        return new Group<>(name);
+    }
+
+    public class Group<K, V> {
+
+        private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+        private final Counter loads;
+        private final Counter collapsed;
+        private final Counter timedOut;
+
+        private Group(String name) {
+            this.loads = Counter.builder("single.flight.loads").tag("group", name).register(meterRegistry);
+            this.collapsed = Counter.builder("single.flight.collapsed").tag("group", name).register(meterRegistry);
+            this.timedOut = Counter.builder("single.flight.timeouts").tag("group", name).register(meterRegistry);
+            Gauge.builder("single.flight.in.flight", inFlight, Map::size).tag("group", name).register(meterRegistry);
+        }
+
+        public V load(K key, Supplier<V> loader){
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> leader = inFlight.putIfAbsent(key, flight);
+            if(leader != null){
+                collapsed.increment();
+                return await(leader);
+            }
+            loads.increment();
+            try{
+                V value = loader.get();
+                flight.complete(value);
+                return value;
+            }catch (RuntimeException | Error ex){
+                flight.completeExceptionally(ex);
+                throw ex;
+            }finally {
+                // callers arriving from now on start a new load, which also picks up later writes
+                inFlight.remove(key, flight);
+            }
+        }
+
+        // the waiter gives up after the timeout, the load itself goes on and still completes the others
+        private V await(CompletableFuture<V> leader){
+            try{
+                return leader.get(timeout, TimeUnit.MILLISECONDS);
+            }catch (TimeoutException ex){
+                timedOut.increment();
+                throw new BlogAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Timed out waiting for the resource to load, retry later");
+            }catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+                throw new BlogAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted waiting for the resource to load");
+            }catch (ExecutionException ex){
+                // the same exception the leader got, so a missing resource is a 404 for every waiter
+                Throwable cause = ex.getCause();
+                if(cause instanceof RuntimeException runtimeException){
+                    throw runtimeException;
+                }
+                if(cause instanceof Error error){
+                    throw error;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
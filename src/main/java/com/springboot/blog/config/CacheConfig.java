@@ -0,0 +1,18 @@
+package com.springboot.blog.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Caches are declared in application.properties so their size, TTL and provider can be changed
+// without code changes. Caches created at startup get hit/miss metrics from actuator.
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    // PostDto by post id, embeds the comments so comment writes evict it too
+    public static final String POSTS_CACHE = "posts";
+    // CategoryDto by category id
+    public static final String CATEGORIES_CACHE = "categories";
+    // the list returned by getAllCategories, by the version tag of the list
+    public static final String CATEGORY_LIST_CACHE = "categoryList";
+}
@@ -0,0 +1,55 @@
+package com.springboot.blog.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Back-pressure for the virtual thread mode: with a thread per request there is no Tomcat pool to queue
+// in, so at most maxInFlight requests run at once and the others wait up to acquireTimeout for a slot
+// before getting 503. Open session in view keeps a connection from the first query to the end of the
+// response, except on the comment stream, so maxInFlight should stay close to app.threads.virtual.maximum-pool-size.
+// With a read replica (ReadReplicaConfig) a connection is only held for a transaction and maxInFlight can be
+// higher, requests beyond the pool then wait up to app.threads.virtual.connection-timeout-milliseconds.
+public class InFlightRequestLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final long acquireTimeout;
+
+    public InFlightRequestLimitFilter(int maxInFlight, long acquireTimeout) {
+        this.permits = new Semaphore(maxInFlight, true);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try{
+            acquired = permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS);
+        }catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if(!acquired){
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            // written here, sendError would forward to /error and that is not public
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"message\":\"Server is busy, retry later\"}");
+            return;
+        }
+        try{
+            filterChain.doFilter(request, response);
+        }finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.springboot.blog.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Open session in view as spring boot registers it (spring.jpa.open-in-view), except for the comment stream.
+// Its chunks are read in transactions of their own; a request bound EntityManager would keep a connection
+// and every streamed comment until a slow reader has received the whole response.
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.open-in-view", havingValue = "true", matchIfMissing = true)
+public class OpenEntityManagerInViewConfig implements WebMvcConfigurer {
+
+    private static final String COMMENT_STREAM = "/api/v1/post/*/comments/stream";
+
+    // replaces the interceptor of spring boot, which backs off when this bean exists
+    @Bean
+    public OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor(){
+        return new OpenEntityManagerInViewInterceptor();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor()).excludePathPatterns(COMMENT_STREAM);
+    }
+}
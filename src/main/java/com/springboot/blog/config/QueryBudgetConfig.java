@@ -0,0 +1,53 @@
+package com.springboot.blog.config;
+
+import com.springboot.blog.diagnostics.QueryBudgetInterceptor;
+import com.springboot.blog.diagnostics.QueryCountingDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+// Statement counting per request, see QueryBudgetInterceptor. On by default, the cost outside of
+// requests is nil and a request pays one proxy call per JDBC call.
+@Configuration
+@ConditionalOnProperty(name = "app.query-budget.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryBudgetConfig implements WebMvcConfigurer {
+
+    private MeterRegistry meterRegistry;
+    private int repeatedStatementThreshold;
+
+    public QueryBudgetConfig(MeterRegistry meterRegistry,
+                             @Value("${app.query-budget.repeated-statement-threshold:5}") int repeatedStatementThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.repeatedStatementThreshold = repeatedStatementThreshold;
+    }
+
+    // static, so the data source is wrapped however early it is created. Only the pools are wrapped,
+    // not the proxies and routers in front of them, or a statement would be counted twice.
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor(){
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)
+                        && !(bean instanceof AbstractRoutingDataSource)){
+                    return new QueryCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueryBudgetInterceptor(meterRegistry, repeatedStatementThreshold));
+    }
+}
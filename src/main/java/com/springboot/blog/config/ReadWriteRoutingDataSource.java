@@ -0,0 +1,77 @@
+package com.springboot.blog.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+
+// Sends read-only transactions to the replica and everything else to the primary. A client that wrote
+// keeps reading from the primary for the sticky window, so it sees its own writes despite replication
+// lag. Clients are told apart like in RateLimitFilter: by user when authenticated, by address otherwise.
+// Must sit behind a LazyConnectionDataSourceProxy, the read-only flag is only known once the transaction
+// has begun, and connections must not outlive their transaction, see ReadReplicaConfig.
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    // clients that wrote within the window, an entry expires when its window ends
+    private final Cache<String, Boolean> stickyClients;
+
+    public ReadWriteRoutingDataSource(Duration stickyWindow, long maximumStickyClients) {
+        this.stickyClients = Caffeine.newBuilder()
+                .expireAfterWrite(stickyWindow)
+                .maximumSize(maximumStickyClients)
+                .build();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String client = currentClient();
+        if(!TransactionSynchronizationManager.isCurrentTransactionReadOnly()){
+            // statements outside a transaction go to the primary without making the client sticky
+            if(client != null && TransactionSynchronizationManager.isActualTransactionActive()){
+                wrote(client);
+            }
+            return Route.PRIMARY;
+        }
+        return client != null && stickyClients.getIfPresent(client) != null ? Route.PRIMARY : Route.REPLICA;
+    }
+
+    // the window starts when the write is committed, so a long transaction does not eat into it
+    private void wrote(String client){
+        stickyClients.put(client, Boolean.TRUE);
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stickyClients.put(client, Boolean.TRUE);
+                }
+            });
+        }
+    }
+
+    // null off a request thread, background work is never sticky
+    private static String currentClient(){
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if(authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)){
+            return "user:" + authentication.getName();
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if(attributes instanceof ServletRequestAttributes servletAttributes){
+            HttpServletRequest request = servletAttributes.getRequest();
+            return "ip:" + request.getRemoteAddr();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.springboot.blog.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// @Scheduled jobs run on the scheduler spring boot configures, see spring.task.scheduling.*
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,9 +1,14 @@
 package com.springboot.blog.config;
 
+import com.springboot.blog.security.BoundedPasswordEncoder;
 import com.springboot.blog.security.JwtAuthenticationEntryPoint;
 import com.springboot.blog.security.JwtAuthenticationFilter;
+import com.springboot.blog.security.RateLimitFilter;
+import com.springboot.blog.security.RateLimiter;
 import io.swagger.v3.oas.annotations.enums.SecuritySchemeType;
 import io.swagger.v3.oas.annotations.security.SecurityScheme;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -36,13 +41,16 @@ public class SecurityConfig {
     private JwtAuthenticationEntryPoint authenticationEntryPoint;
 
     private JwtAuthenticationFilter authenticationFilter;
+    private RateLimiter rateLimiter;
 
     public SecurityConfig(UserDetailsService userDetailsService,
                           JwtAuthenticationEntryPoint authenticationEntryPoint,
-                          JwtAuthenticationFilter authenticationFilter){
+                          JwtAuthenticationFilter authenticationFilter,
+                          RateLimiter rateLimiter){
         this.userDetailsService = userDetailsService;
         this.authenticationEntryPoint = authenticationEntryPoint;
         this.authenticationFilter = authenticationFilter;
+        this.rateLimiter = rateLimiter;
 
     }
 
@@ -51,9 +59,15 @@ public class SecurityConfig {
         return configuration.getAuthenticationManager();
     }
 
-    @Bean
-    public static PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+    // bcrypt runs on its own bounded pool, hashes with a lower strength are upgraded on the next login
+    @Bean(destroyMethod = "shutdown")
+    public static BoundedPasswordEncoder passwordEncoder(@Value("${app.password-hashing.bcrypt-strength:10}") int strength,
+                                                         @Value("${app.password-hashing.threads:2}") int threads,
+                                                         @Value("${app.password-hashing.queue-capacity:50}") int queueCapacity,
+                                                         @Value("${app.password-hashing.timeout-milliseconds:5000}") long timeout,
+                                                         MeterRegistry meterRegistry){
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), threads, queueCapacity, timeout,
+                meterRegistry);
     }
 
     //Basic Auth
@@ -67,12 +81,16 @@ public class SecurityConfig {
                         .requestMatchers("/api/v1/auth/**").permitAll()
                         .requestMatchers("/swagger-ui/**").permitAll()
                         .requestMatchers("/v3/api-docs/**").permitAll()
+                        // metrics and latency histograms describe every endpoint, DELETE /actuator/latency resets them
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
 //                ).httpBasic(Customizer.withDefaults());
         ).exceptionHandling(exception -> exception
                 .authenticationEntryPoint(authenticationEntryPoint)
         ).sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
         http.addFilterBefore(authenticationFilter, UsernamePasswordAuthenticationFilter.class);
+        // not a bean, spring boot would register it a second time outside of the security chain
+        http.addFilterAfter(new RateLimitFilter(rateLimiter), JwtAuthenticationFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,24 @@
+package com.springboot.blog.config;
+
+import com.springboot.blog.diagnostics.LatencyHistograms;
+import com.springboot.blog.diagnostics.ServerTimingFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+// Per phase request timings, see ServerTimingFilter and the "latency" actuator endpoint.
+@Configuration
+@ConditionalOnProperty(name = "app.server-timing.enabled", havingValue = "true", matchIfMissing = true)
+public class ServerTimingConfig {
+
+    // right after the in-flight limit, so the JWT check and everything after it is timed
+    @Bean
+    public FilterRegistrationBean<ServerTimingFilter> serverTimingFilter(LatencyHistograms latencyHistograms){
+        FilterRegistrationBean<ServerTimingFilter> registration =
+                new FilterRegistrationBean<>(new ServerTimingFilter(latencyHistograms));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
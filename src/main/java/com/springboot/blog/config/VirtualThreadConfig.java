@@ -0,0 +1,70 @@
+package com.springboot.blog.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Opt-in (app.threads.virtual.enabled=true): Tomcat runs every request on its own virtual thread, so a
+// request blocked on MySQL or the connection pool no longer holds a platform thread. Concurrency is then
+// bounded by InFlightRequestLimitFilter and the Hikari pool instead of the Tomcat thread count.
+// Needs a Java 21 runtime, the code is compiled for 17 and looks the executor up reflectively.
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadRequestExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }catch (NoSuchMethodException ex){
+            throw new IllegalStateException("app.threads.virtual.enabled needs Java 21 or newer, running on "
+                    + Runtime.version(), ex);
+        }catch (ReflectiveOperationException ex){
+            throw new IllegalStateException("Could not create the virtual thread executor", ex);
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadRequestExecutor){
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadRequestExecutor);
+    }
+
+    // Sizes the pool of the primary, the replica keeps app.datasource.replica.maximum-pool-size. A request
+    // waits at most connection-timeout for a connection instead of Hikari's 30s, behind the in-flight limit
+    // the pool is the real limit on concurrent queries. Applied before the pool starts on its first connection.
+    @Bean
+    public static BeanPostProcessor virtualThreadConnectionPool(
+            @Value("${app.threads.virtual.maximum-pool-size:20}") int maximumPoolSize,
+            @Value("${app.threads.virtual.connection-timeout-milliseconds:5000}") long connectionTimeout){
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(bean instanceof HikariDataSource dataSource && !dataSource.isReadOnly()){
+                    dataSource.setMaximumPoolSize(maximumPoolSize);
+                    dataSource.setConnectionTimeout(connectionTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<InFlightRequestLimitFilter> inFlightRequestLimitFilter(
+            @Value("${app.threads.virtual.max-in-flight:200}") int maxInFlight,
+            @Value("${app.threads.virtual.acquire-timeout-milliseconds:1000}") long acquireTimeout){
+        FilterRegistrationBean<InFlightRequestLimitFilter> registration =
+                new FilterRegistrationBean<>(new InFlightRequestLimitFilter(maxInFlight, acquireTimeout));
+        // ahead of spring security, a rejected request costs no token check and no query
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -1,11 +1,14 @@
 package com.springboot.blog.controller;
 
 import com.springboot.blog.payload.JWTAuthResponse;
+import com.springboot.blog.payload.JwtKeyRotationDto;
 import com.springboot.blog.payload.LoginDto;
 import com.springboot.blog.payload.RegisterDto;
 import com.springboot.blog.service.AuthService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -35,4 +38,14 @@ public class AuthController {
         return new ResponseEntity<>(response, HttpStatus.CREATED);
 
     }
+
+    // Build rotate JWT signing key REST API
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(
+            name="Bear Authentication"
+    )
+    @PostMapping("/keys/rotate")
+    public ResponseEntity<String> rotateSigningKey(@RequestBody JwtKeyRotationDto jwtKeyRotationDto){
+        return ResponseEntity.ok(authService.rotateSigningKey(jwtKeyRotationDto));
+    }
 }
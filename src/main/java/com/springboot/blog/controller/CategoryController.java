@@ -1,12 +1,22 @@
 package com.springboot.blog.controller;
 
 import com.springboot.blog.payload.CategoryDto;
+import com.springboot.blog.payload.JobDto;
+import com.springboot.blog.payload.ResourceVersion;
+import com.springboot.blog.repository.FieldProjection;
 import com.springboot.blog.service.CategoryService;
+import com.springboot.blog.utils.ConditionalRequests;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v1/categories")
@@ -27,15 +37,48 @@ public class CategoryController {
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<CategoryDto> getCategory(@PathVariable(name = "id") Long categoryId){
-        CategoryDto categoryDto =  categoryService.getCategory(categoryId);
+    public ResponseEntity<CategoryDto> getCategory(@PathVariable(name = "id") Long categoryId, ServletWebRequest webRequest){
+        Optional<ResourceVersion> version = categoryService.getCategoryVersion(categoryId);
+        if(ConditionalRequests.isNotModified(webRequest, version, "category-" + categoryId)){
+            return null;
+        }
+        CategoryDto categoryDto =  categoryService.getCategory(categoryId, version.map(ResourceVersion::getTag).orElse(null));
+        ConditionalRequests.setETag(webRequest, "category-" + categoryId, categoryDto.getVersionTag());
         return ResponseEntity.ok(categoryDto);
     }
 
+    // only the comma separated fields are read and written, see FieldProjection.CATEGORY
+    @GetMapping(value = "{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getCategoryFields(@PathVariable(name = "id") Long categoryId,
+                                                                 @RequestParam(value = "fields") String fields,
+                                                                 ServletWebRequest webRequest){
+        Set<String> selectedFields = FieldProjection.CATEGORY.parse(fields);
+        if(ConditionalRequests.isNotModified(webRequest, categoryService.getCategoryVersion(categoryId),
+                "category-fields-" + categoryId + "-" + String.join(",", selectedFields))){
+            return null;
+        }
+        return ResponseEntity.ok(categoryService.getCategoryFields(categoryId, selectedFields));
+    }
+
     // Build Get all Categories REST API
     @GetMapping
-    public ResponseEntity<List<CategoryDto>> getCategories(){
-        return ResponseEntity.ok(categoryService.getAllCategories());
+    public ResponseEntity<List<CategoryDto>> getCategories(ServletWebRequest webRequest){
+        ResourceVersion version = categoryService.getCategoriesVersion();
+        if(ConditionalRequests.isNotModified(webRequest, Optional.of(version), "categories")){
+            return null;
+        }
+        return ResponseEntity.ok(categoryService.getAllCategories(version.getTag()));
+    }
+
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getCategoryFieldsList(@RequestParam(value = "fields") String fields,
+                                                                           ServletWebRequest webRequest){
+        Set<String> selectedFields = FieldProjection.CATEGORY.parse(fields);
+        if(ConditionalRequests.isNotModified(webRequest, Optional.of(categoryService.getCategoriesVersion()),
+                "categories-fields-" + String.join(",", selectedFields))){
+            return null;
+        }
+        return ResponseEntity.ok(categoryService.getAllCategoryFields(selectedFields));
     }
 
     // Build update category REST API
@@ -52,4 +95,12 @@ public class CategoryController {
         categoryService.deleteCategory(categoryId);
         return ResponseEntity.ok("Category deleted Successfully");
     }
+
+    // large categories are deleted in the background, the job is polled at the Location
+    @DeleteMapping(value = "{id}", params = "async=true")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<JobDto> deleteCategoryInBackground(@PathVariable(name="id") Long categoryId){
+        JobDto job = categoryService.deleteCategoryInBackground(categoryId);
+        return ResponseEntity.accepted().location(URI.create("/api/v1/jobs/" + job.getId())).body(job);
+    }
 }
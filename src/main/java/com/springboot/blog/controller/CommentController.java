@@ -1,14 +1,31 @@
 package com.springboot.blog.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.blog.diagnostics.QueryBudget;
+import com.springboot.blog.payload.BulkResponse;
+import com.springboot.blog.payload.CommentCursorResponse;
 import com.springboot.blog.payload.CommentDto;
+import com.springboot.blog.repository.FieldProjection;
 import com.springboot.blog.service.CommentService;
+import com.springboot.blog.utils.AppConstants;
+import com.springboot.blog.utils.ConditionalRequests;
+import com.springboot.blog.writebehind.CommentWriteBehind;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/v1")
@@ -18,28 +35,113 @@ import java.util.List;
 public class CommentController {
 
     private CommentService commentService;
+    private ObjectMapper objectMapper;
+    // only there when app.comments.write-behind.enabled=true
+    private CommentWriteBehind commentWriteBehind;
 
-    public CommentController(CommentService commentService) {
+    public CommentController(CommentService commentService, ObjectMapper objectMapper,
+                             ObjectProvider<CommentWriteBehind> commentWriteBehind) {
         this.commentService = commentService;
+        this.objectMapper = objectMapper;
+        this.commentWriteBehind = commentWriteBehind.getIfAvailable();
     }
 
+    // with write-behind the comment is stored later, 202 carries the clientId it will be stored with
     @PostMapping("/post/{postId}/comments")
     public ResponseEntity<CommentDto> createComment(@PathVariable(value = "postId") long postId, @Valid @RequestBody CommentDto commentDto){
+        if(commentWriteBehind != null){
+            return new ResponseEntity<>(commentWriteBehind.accept(postId, commentDto), HttpStatus.ACCEPTED);
+        }
         return new ResponseEntity<>(commentService.createComment(postId,commentDto), HttpStatus.CREATED);
     }
+    // items are validated one by one, the response has a status per item
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/post/{postId}/comments/bulk")
+    public ResponseEntity<BulkResponse> createComments(@PathVariable(value = "postId") long postId,
+                                                       @RequestBody List<CommentDto> commentDtos){
+        return ResponseEntity.ok(commentService.createComments(postId, commentDtos));
+    }
+
     @GetMapping("/post/{postId}/comments")
-    public List<CommentDto> getCommentsByPostId(@PathVariable(value = "postId") Long postId){
+    @QueryBudget(statements = 2)
+    public List<CommentDto> getCommentsByPostId(@PathVariable(value = "postId") Long postId, ServletWebRequest webRequest){
+        if(ConditionalRequests.isNotModified(webRequest, commentService.getCommentsVersion(postId), "comments-" + postId)){
+            return null;
+        }
         return commentService.getCommentsByPostId(postId);
     }
 
+    // only the comma separated fields are read and written, see FieldProjection.COMMENT
+    @GetMapping(value = "/post/{postId}/comments", params = {"fields", "!cursor"})
+    @QueryBudget(statements = 2)
+    public List<Map<String, Object>> getCommentFieldsByPostId(@PathVariable(value = "postId") Long postId,
+                                                              @RequestParam(value = "fields") String fields,
+                                                              ServletWebRequest webRequest){
+        Set<String> selectedFields = FieldProjection.COMMENT.parse(fields);
+        if(ConditionalRequests.isNotModified(webRequest, commentService.getCommentsVersion(postId),
+                "comments-fields-" + postId + "-" + String.join(",", selectedFields))){
+            return null;
+        }
+        return commentService.getCommentFieldsByPostId(postId, selectedFields);
+    }
+
+    // pass an empty cursor for the first page and then the returned nextCursor
+    @GetMapping(value = "/post/{postId}/comments", params = "cursor")
+    @QueryBudget(statements = 1)
+    public CommentCursorResponse getCommentsByPostIdByCursor(@PathVariable(value = "postId") Long postId,
+                                                             @RequestParam(value = "cursor") String cursor,
+                                                             @RequestParam(value = "pageSize",defaultValue = AppConstants.DEFAULT_PAGE_SIZE,required = false) int pageSize){
+        return commentService.getCommentsByPostIdByCursor(postId, cursor, pageSize);
+    }
+
+    // one JSON comment per line, written a chunk of rows at a time, 404 before anything is written
+    @GetMapping(value = "/post/{postId}/comments/stream", produces = AppConstants.NDJSON_MEDIA_TYPE)
+    public void streamCommentsByPostId(@PathVariable(value = "postId") Long postId,
+                                       HttpServletResponse response) throws IOException {
+        response.setContentType(AppConstants.NDJSON_MEDIA_TYPE);
+        JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream());
+        // lines are terminated explicitly instead of the default space between root values
+        generator.setRootValueSeparator(null);
+        commentService.streamCommentsByPostId(postId, commentDto -> {
+            try{
+                generator.writeObject(commentDto);
+                generator.writeRaw('\n');
+            }catch (IOException ex){
+                throw new UncheckedIOException(ex);
+            }
+        });
+        generator.flush();
+    }
+
     @GetMapping("/posts/{postId}/comments/{id}")
+    @QueryBudget(statements = 2)
     public ResponseEntity<CommentDto> getCommentById(@PathVariable(value = "postId") Long postId,
-                                                     @PathVariable(value = "id") Long commentId){
+                                                     @PathVariable(value = "id") Long commentId,
+                                                     ServletWebRequest webRequest){
+        if(ConditionalRequests.isNotModified(webRequest, commentService.getCommentVersion(postId, commentId),
+                "comment-" + postId + "-" + commentId)){
+            return null;
+        }
         CommentDto commentDto = commentService.getCommentById(postId,commentId);
         return new ResponseEntity<>(commentDto,HttpStatus.OK);
     }
 
+    @GetMapping(value = "/posts/{postId}/comments/{id}", params = "fields")
+    @QueryBudget(statements = 2)
+    public ResponseEntity<Map<String, Object>> getCommentFieldsById(@PathVariable(value = "postId") Long postId,
+                                                                    @PathVariable(value = "id") Long commentId,
+                                                                    @RequestParam(value = "fields") String fields,
+                                                                    ServletWebRequest webRequest){
+        Set<String> selectedFields = FieldProjection.COMMENT.parse(fields);
+        if(ConditionalRequests.isNotModified(webRequest, commentService.getCommentVersion(postId, commentId),
+                "comment-fields-" + postId + "-" + commentId + "-" + String.join(",", selectedFields))){
+            return null;
+        }
+        return ResponseEntity.ok(commentService.getCommentFieldsById(postId, commentId, selectedFields));
+    }
+
     @PutMapping("/posts/{postId}/comments/{id}")
+    @QueryBudget(statements = 3)
     public ResponseEntity<CommentDto> updateComment(@PathVariable(value = "postId") Long postId,
                                                     @PathVariable(value = "id") Long commentId,
                                                     @Valid @RequestBody CommentDto commentDto){
@@ -47,7 +149,15 @@ public class CommentController {
         return new ResponseEntity<>(updateComment,HttpStatus.OK);
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/posts/{postId}/comments/bulk")
+    public ResponseEntity<BulkResponse> deleteComments(@PathVariable(value = "postId") Long postId,
+                                                       @RequestBody List<Long> commentIds){
+        return ResponseEntity.ok(commentService.deleteComments(postId, commentIds));
+    }
+
     @DeleteMapping("/posts/{postId}/comments/{id}")
+    @QueryBudget(statements = 2)
     public ResponseEntity<String> deleteComment(@PathVariable(value = "postId") Long postId,
                                                 @PathVariable(value = "id") Long commentId){
         commentService.deleteComment(postId,commentId);
@@ -0,0 +1,30 @@
+package com.springboot.blog.controller;
+
+import com.springboot.blog.exception.ResourceNotFoundException;
+import com.springboot.blog.jobs.JobRegistry;
+import com.springboot.blog.payload.JobDto;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/jobs")
+public class JobController {
+
+    private JobRegistry jobRegistry;
+
+    public JobController(JobRegistry jobRegistry) {
+        this.jobRegistry = jobRegistry;
+    }
+
+    // status of a background job, such as a delete with ?async=true
+    @GetMapping("{id}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<JobDto> getJob(@PathVariable(name = "id") Long jobId){
+        return ResponseEntity.ok(jobRegistry.get(jobId).orElseThrow(() ->
+                new ResourceNotFoundException("Job","id",jobId)));
+    }
+}
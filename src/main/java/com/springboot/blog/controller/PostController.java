@@ -1,10 +1,25 @@
 package com.springboot.blog.controller;
 
+import com.springboot.blog.cache.CompressedPostBodyCache;
+import com.springboot.blog.diagnostics.QueryBudget;
+import com.springboot.blog.mapper.PostMapper;
+import com.springboot.blog.payload.BulkResponse;
+import com.springboot.blog.payload.FieldsPageResponse;
+import com.springboot.blog.payload.JobDto;
+import com.springboot.blog.payload.PostCursorResponse;
 import com.springboot.blog.payload.PostDto;
 import com.springboot.blog.payload.PostDtoV2;
 import com.springboot.blog.payload.PostResponse;
+import com.springboot.blog.payload.PostSearchResult;
+import com.springboot.blog.payload.PostSummaryDto;
+import com.springboot.blog.payload.PostSummaryResponse;
+import com.springboot.blog.payload.ResourceVersion;
+import com.springboot.blog.repository.FieldProjection;
 import com.springboot.blog.service.PostService;
+import com.springboot.blog.statistics.PostStatistics;
 import com.springboot.blog.utils.AppConstants;
+import com.springboot.blog.utils.ConditionalRequests;
+import com.springboot.blog.utils.GzipResponses;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -14,9 +29,15 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping()
@@ -26,9 +47,16 @@ import java.util.List;
 public class PostController {
 
     private PostService postService;
+    private PostMapper postMapper;
+    private CompressedPostBodyCache compressedPostBodyCache;
+    private PostStatistics postStatistics;
 
-    public PostController(PostService postService) {
+    public PostController(PostService postService, PostMapper postMapper,
+                          CompressedPostBodyCache compressedPostBodyCache, PostStatistics postStatistics) {
         this.postService = postService;
+        this.postMapper = postMapper;
+        this.compressedPostBodyCache = compressedPostBodyCache;
+        this.postStatistics = postStatistics;
     }
 
     //create blog post
@@ -60,6 +88,7 @@ public class PostController {
             description = "Http Status 200 SUCCESS"
     )
     @GetMapping("/api/v1/posts")
+    @QueryBudget(statements = 3)
     public PostResponse getAllPosts(
             @RequestParam(value="pageNo",defaultValue = AppConstants.DEFAULT_PAGE_NUMBER,required = false) int pageNo,
             @RequestParam(value = "pageSize",defaultValue = AppConstants.DEFAULT_PAGE_SIZE,required = false) int pageSize,
@@ -69,6 +98,123 @@ public class PostController {
         return postService.getAllPost( pageNo,  pageSize,sortBy,sortDir);
     }
 
+    @Operation(
+            summary = "Get all Post summaries REST API",
+            description = "With view=summary posts are listed without comments and with a content excerpt, " +
+                    "the comments are only counted"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @GetMapping(value = "/api/v1/posts", params = {"view=" + AppConstants.SUMMARY_VIEW, "!cursor"})
+    @QueryBudget(statements = 2)
+    public PostSummaryResponse getAllPostSummaries(
+            @RequestParam(value="pageNo",defaultValue = AppConstants.DEFAULT_PAGE_NUMBER,required = false) int pageNo,
+            @RequestParam(value = "pageSize",defaultValue = AppConstants.DEFAULT_PAGE_SIZE,required = false) int pageSize,
+            @RequestParam(value="sortBy",defaultValue = AppConstants.DEFAULT_SORT_BY , required = false) String sortBy,
+            @RequestParam(value="sortDir",defaultValue = AppConstants.DEFAULT_SORT_DIRECTION,required = false) String sortDir){
+
+        return postService.getAllPostSummaries(pageNo, pageSize, sortBy, sortDir);
+    }
+
+    @Operation(
+            summary = "Get all Post with selected fields REST API",
+            description = "fields is a comma separated list of id,title,description,content,categoryId,viewCount," +
+                    "commentCount,comments, " +
+                    "only the selected columns are read and written"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @GetMapping(value = "/api/v1/posts", params = {"fields", "!cursor", "!view"})
+    @QueryBudget(statements = 2)
+    public FieldsPageResponse getAllPostFields(
+            @RequestParam(value="pageNo",defaultValue = AppConstants.DEFAULT_PAGE_NUMBER,required = false) int pageNo,
+            @RequestParam(value = "pageSize",defaultValue = AppConstants.DEFAULT_PAGE_SIZE,required = false) int pageSize,
+            @RequestParam(value="sortBy",defaultValue = AppConstants.DEFAULT_SORT_BY , required = false) String sortBy,
+            @RequestParam(value="sortDir",defaultValue = AppConstants.DEFAULT_SORT_DIRECTION,required = false) String sortDir,
+            @RequestParam(value = "fields") String fields){
+
+        return postService.getAllPostFields(pageNo, pageSize, sortBy, sortDir, FieldProjection.POST.parse(fields));
+    }
+
+    @Operation(
+            summary = "Get all Post by cursor REST API",
+            description = "Keyset pagination over posts, pass an empty cursor for the first page and then the " +
+                    "returned nextCursor, every page costs the same however deep it is, pages hold at most 100 posts"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @GetMapping(value = "/api/v1/posts", params = "cursor")
+    @QueryBudget(statements = 2)
+    public PostCursorResponse getAllPostsByCursor(
+            @RequestParam(value = "cursor") String cursor,
+            @RequestParam(value = "pageSize",defaultValue = AppConstants.DEFAULT_PAGE_SIZE,required = false) int pageSize,
+            @RequestParam(value="sortBy",defaultValue = AppConstants.DEFAULT_SORT_BY , required = false) String sortBy,
+            @RequestParam(value="sortDir",defaultValue = AppConstants.DEFAULT_SORT_DIRECTION,required = false) String sortDir,
+            @RequestParam(value="includeTotal",defaultValue = "false",required = false) boolean includeTotal){
+
+        return postService.getAllPostByCursor(cursor, pageSize, sortBy, sortDir, includeTotal);
+    }
+
+    @Operation(
+            summary = "Search Post REST API",
+            description = "Full text search over title, description and content, ranked by relevance. " +
+                    "A term ending with * matches every term starting with it"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @GetMapping("/api/v1/posts/search")
+    public List<PostSearchResult> searchPosts(
+            @RequestParam(value = "q") String query,
+            @RequestParam(value = "categoryId", required = false) Long categoryId,
+            @RequestParam(value = "limit", defaultValue = AppConstants.DEFAULT_SEARCH_LIMIT, required = false) int limit){
+
+        return postService.searchPosts(query, categoryId, limit);
+    }
+
+    @Operation(
+            summary = "Get popular Post REST API",
+            description = "Most viewed (by=views) or most commented (by=comments) posts, the counts are " +
+                    "updated every few seconds"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @GetMapping("/api/v1/posts/popular")
+    @QueryBudget(statements = 1)
+    public List<PostSummaryDto> getPopularPosts(
+            @RequestParam(value = "by", defaultValue = AppConstants.POPULAR_BY_VIEWS, required = false) String by,
+            @RequestParam(value = "limit", defaultValue = AppConstants.DEFAULT_POPULAR_LIMIT, required = false) int limit){
+
+        return postService.getPopularPosts(by, limit);
+    }
+
+    @Operation(
+            summary = "Get trending Post REST API",
+            description = "Posts ranked by recent views and comments, older activity counts less and less. " +
+                    "Optionally limited to one category"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @GetMapping("/api/v1/posts/trending")
+    @QueryBudget(statements = 1)
+    public List<PostSummaryDto> getTrendingPosts(
+            @RequestParam(value = "categoryId", required = false) Long categoryId,
+            @RequestParam(value = "limit", defaultValue = AppConstants.DEFAULT_POPULAR_LIMIT, required = false) int limit){
+
+        return postService.getTrendingPosts(categoryId, limit);
+    }
+
     @Operation(
             summary = "Get Post by Id REST API",
             description = "Get Post by Id REST API is use to get a post from database"
@@ -84,8 +230,46 @@ public class PostController {
 //    @GetMapping(value = "/api/posts/{id}",headers = "X-API-VERSION=1")
 // versioning using content negotation
 //    @GetMapping(value = "/api/posts/{id}",produces = "application/vnd.ronak.v1+json")
-    public ResponseEntity<PostDto> getPostByIdV1(@PathVariable(name="id") long id){
-        return ResponseEntity.ok(postService.getPostById(id));
+    @QueryBudget(statements = 2)
+    public ResponseEntity<PostDto> getPostByIdV1(@PathVariable(name="id") long id, ServletWebRequest webRequest)
+            throws IOException {
+        Optional<ResourceVersion> version = postService.getPostVersion(id);
+        // counted here, 304s and compressed bodies are answered without calling getPostById
+        version.ifPresent(v -> postStatistics.recordView(id));
+        // the gzip body is a representation of its own, with its own ETag
+        boolean gzip = version.isPresent() && GzipResponses.acceptsGzip(webRequest.getRequest());
+        String representation = "post-v1-" + id + (gzip ? "-gzip" : "");
+        GzipResponses.varyOnAcceptEncoding(webRequest.getResponse());
+        // weak, the view and comment counts change without a new version of the post
+        if(ConditionalRequests.isNotModified(webRequest, version, representation, true)){
+            return null;
+        }
+        String versionTag = version.map(ResourceVersion::getTag).orElse(null);
+        // the ETag is the one of the body sent, a write may have committed since the version was read
+        if(gzip){
+            CompressedPostBodyCache.CompressedBody body = compressedPostBodyCache.getGzip(id, CompressedPostBodyCache.POST_V1,
+                    versionTag, () -> postService.getPostById(id, versionTag), postDto -> postDto);
+            ConditionalRequests.setETag(webRequest, representation, body.getVersionTag(), true);
+            GzipResponses.write(webRequest.getResponse(), body.getGzip());
+            return null;
+        }
+        PostDto postDto = postService.getPostById(id, versionTag);
+        ConditionalRequests.setETag(webRequest, representation, postDto.getVersionTag(), true);
+        return ResponseEntity.ok(postDto);
+    }
+
+    @GetMapping(value = "/api/v1/posts/{id}", params = "fields")
+    @QueryBudget(statements = 2)
+    public ResponseEntity<Map<String, Object>> getPostFieldsById(@PathVariable(name="id") long id,
+                                                                 @RequestParam(value = "fields") String fields,
+                                                                 ServletWebRequest webRequest){
+        Set<String> selectedFields = FieldProjection.POST.parse(fields);
+        boolean counts = selectedFields.contains("viewCount") || selectedFields.contains("commentCount");
+        if(ConditionalRequests.isNotModified(webRequest, postService.getPostVersion(id),
+                "post-fields-" + id + "-" + String.join(",", selectedFields), counts)){
+            return null;
+        }
+        return ResponseEntity.ok(postService.getPostFieldsById(id, selectedFields));
     }
 
     @GetMapping("/api/v2/posts/{id}")
@@ -95,18 +279,38 @@ public class PostController {
 //@GetMapping(value = "/api/posts/{id}",headers = "X-API-VERSION=2")
 //versioning using content negotation
 //@GetMapping(value = "/api/posts/{id}",produces = "application/vnd.ronak.v2+json")
-    public ResponseEntity<PostDtoV2> getPostByIdV2(@PathVariable(name="id") long id){
-        PostDto postDto = postService.getPostById(id);
-        PostDtoV2 postDtoV2 = new PostDtoV2();
-        postDtoV2.setId(postDto.getId());
-        postDtoV2.setTitle(postDto.getTitle());
-        postDtoV2.setDescription(postDto.getDescription());
-        postDtoV2.setContent(postDto.getContent());
+    @QueryBudget(statements = 2)
+    public ResponseEntity<PostDtoV2> getPostByIdV2(@PathVariable(name="id") long id, ServletWebRequest webRequest)
+            throws IOException {
+        Optional<ResourceVersion> version = postService.getPostVersion(id);
+        // counted here, 304s and compressed bodies are answered without calling getPostById
+        version.ifPresent(v -> postStatistics.recordView(id));
+        boolean gzip = version.isPresent() && GzipResponses.acceptsGzip(webRequest.getRequest());
+        String representation = "post-v2-" + id + (gzip ? "-gzip" : "");
+        GzipResponses.varyOnAcceptEncoding(webRequest.getResponse());
+        if(ConditionalRequests.isNotModified(webRequest, version, representation)){
+            return null;
+        }
+        String versionTag = version.map(ResourceVersion::getTag).orElse(null);
+        if(gzip){
+            CompressedPostBodyCache.CompressedBody body = compressedPostBodyCache.getGzip(id, CompressedPostBodyCache.POST_V2,
+                    versionTag, () -> postService.getPostById(id, versionTag), this::toPostDtoV2);
+            ConditionalRequests.setETag(webRequest, representation, body.getVersionTag());
+            GzipResponses.write(webRequest.getResponse(), body.getGzip());
+            return null;
+        }
+        PostDto postDto = postService.getPostById(id, versionTag);
+        ConditionalRequests.setETag(webRequest, representation, postDto.getVersionTag());
+        return ResponseEntity.ok(toPostDtoV2(postDto));
+    }
+
+    private PostDtoV2 toPostDtoV2(PostDto postDto){
+        PostDtoV2 postDtoV2 = postMapper.mapToDtoV2(postDto);
         List<String> tags = new ArrayList<>();
         tags.add("Java");
         tags.add("AWS");
         postDtoV2.setTags(tags);
-        return ResponseEntity.ok(postDtoV2);
+        return postDtoV2;
     }
 
     @Operation(
@@ -145,12 +349,96 @@ public class PostController {
         return new ResponseEntity<>("Post entity deleted successfully",HttpStatus.OK);
     }
 
+    @Operation(
+            summary = "Delete Post by Id in the background REST API",
+            description = "Deletes the post and its comments in the background, the returned job is polled at /api/v1/jobs/{id}"
+    )
+    @ApiResponse(
+            responseCode = "202",
+            description = "Http Status 202 ACCEPTED"
+    )
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping(value = "/api/v1/posts/{id}", params = "async=true")
+    @SecurityRequirement(
+            name="Bear Authentication"
+    )
+    public ResponseEntity<JobDto> deletePostInBackground(@PathVariable(name="id") long id){
+        JobDto job = postService.deletePostByIdInBackground(id);
+        return ResponseEntity.accepted().location(URI.create("/api/v1/jobs/" + job.getId())).body(job);
+    }
+
+    @Operation(
+            summary = "Bulk create Post REST API",
+            description = "Creates up to app.bulk-max-items posts with batched inserts, every item is validated on " +
+                    "its own and gets its own status in the response"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @SecurityRequirement(
+            name="Bear Authentication"
+    )
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/api/v1/posts/bulk")
+    public ResponseEntity<BulkResponse> createPosts(@RequestBody List<PostDto> postDtos){
+        return ResponseEntity.ok(postService.createPosts(postDtos));
+    }
+
+    @Operation(
+            summary = "Bulk update Post REST API",
+            description = "Updates the posts identified by the id of each item with batched updates"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @SecurityRequirement(
+            name="Bear Authentication"
+    )
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/api/v1/posts/bulk")
+    public ResponseEntity<BulkResponse> updatePosts(@RequestBody List<PostDto> postDtos){
+        return ResponseEntity.ok(postService.updatePosts(postDtos));
+    }
+
+    @Operation(
+            summary = "Bulk delete Post REST API",
+            description = "Deletes the posts with the given ids and their comments"
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Http Status 200 SUCCESS"
+    )
+    @SecurityRequirement(
+            name="Bear Authentication"
+    )
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/api/v1/posts/bulk")
+    public ResponseEntity<BulkResponse> deletePosts(@RequestBody List<Long> ids){
+        return ResponseEntity.ok(postService.deletePosts(ids));
+    }
+
     //Build get post by Category REST API
     // http://localhost:8080/api/v1/posts//Category/3
     @GetMapping("/api/v1/posts/category/{id}")
+    @QueryBudget(statements = 2)
     public ResponseEntity<List<PostDto>> getPostsbyCategory(@PathVariable(name = "id") Long categoryId){
         List<PostDto> postDtos = postService.getPostByCategory(categoryId);
         return ResponseEntity.ok(postDtos);
     }
 
+    @GetMapping(value = "/api/v1/posts/category/{id}", params = {"fields", "!view"})
+    @QueryBudget(statements = 2)
+    public ResponseEntity<List<Map<String, Object>>> getPostFieldsByCategory(@PathVariable(name = "id") Long categoryId,
+                                                                             @RequestParam(value = "fields") String fields){
+        return ResponseEntity.ok(postService.getPostFieldsByCategory(categoryId, FieldProjection.POST.parse(fields)));
+    }
+
+    @GetMapping(value = "/api/v1/posts/category/{id}", params = "view=" + AppConstants.SUMMARY_VIEW)
+    @QueryBudget(statements = 2)
+    public ResponseEntity<List<PostSummaryDto>> getPostSummariesByCategory(@PathVariable(name = "id") Long categoryId){
+        return ResponseEntity.ok(postService.getPostSummariesByCategory(categoryId));
+    }
+
 }
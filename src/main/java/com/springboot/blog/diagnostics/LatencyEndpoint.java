@@ -0,0 +1,62 @@
+package com.springboot.blog.diagnostics;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// GET /actuator/latency lists the percentiles of every handler and phase in milliseconds,
+// GET /actuator/latency/{handler} those of one handler, DELETE /actuator/latency starts over. Admins only,
+// see SecurityConfig.
+@Component
+@Endpoint(id = "latency")
+public class LatencyEndpoint {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private LatencyHistograms latencyHistograms;
+
+    public LatencyEndpoint(LatencyHistograms latencyHistograms) {
+        this.latencyHistograms = latencyHistograms;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Map<String, Object>>> latencies(){
+        Map<String, Map<String, Map<String, Object>>> latencies = new TreeMap<>();
+        latencyHistograms.getHandlers().values().forEach(latency -> latencies.put(latency.getName(), summarize(latency)));
+        return latencies;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> latency(@Selector String handler){
+        return latencyHistograms.getHandlers().values().stream()
+                .filter(latency -> latency.getName().equals(handler))
+                .findFirst().map(this::summarize).orElse(null);
+    }
+
+    @DeleteOperation
+    public void reset(){
+        latencyHistograms.reset();
+    }
+
+    private Map<String, Map<String, Object>> summarize(LatencyHistograms.HandlerLatency latency){
+        Map<String, Map<String, Object>> phases = new LinkedHashMap<>();
+        for(RequestTimings.Phase phase : LatencyHistograms.PHASES){
+            LatencyHistogram histogram = latency.get(phase);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", histogram.getCount());
+            for(double percentile : PERCENTILES){
+                summary.put("p" + (percentile == (long) percentile ? String.valueOf((long) percentile)
+                        : String.valueOf(percentile)), histogram.percentile(percentile) / 1000.0);
+            }
+            summary.put("max", histogram.getMax() / 1000.0);
+            phases.put(phase.metricName(), summary);
+        }
+        return phases;
+    }
+}
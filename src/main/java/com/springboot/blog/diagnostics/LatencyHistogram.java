@@ -0,0 +1,86 @@
+package com.springboot.blog.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of microsecond latencies in the style of HdrHistogram: values below 32 get a
+// bucket each, above that every power of two is split in 16 buckets, so a recorded value is off by at
+// most 1/16. Recording is two atomic increments and a max update on preallocated arrays.
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+    // about 12 days in microseconds, longer values go to the last bucket
+    private static final int MAX_BIT = 40;
+    private static final int BUCKETS = LINEAR_LIMIT + (MAX_BIT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros){
+        long value = Math.max(micros, 0);
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        long currentMax;
+        while(value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)){
+            // retry, another thread raised the max
+        }
+    }
+
+    public long getCount(){
+        return count.get();
+    }
+
+    public long getMax(){
+        return max.get();
+    }
+
+    // highest value of the bucket holding the given percentile, never above the max recorded
+    public long percentile(double percentile){
+        long total = count.get();
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts.get(i);
+            if(seen >= rank){
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset(){
+        for(int i = 0; i < BUCKETS; i++){
+            counts.set(i, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    static int index(long value){
+        if(value < LINEAR_LIMIT){
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        if(highestBit >= MAX_BIT){
+            return BUCKETS - 1;
+        }
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValue(int index){
+        if(index < LINEAR_LIMIT){
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,62 @@
+package com.springboot.blog.diagnostics;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One LatencyHistogram per handler method and phase, kept since startup or the last reset.
+@Component
+public class LatencyHistograms {
+
+    // values() clones the array on every call
+    static final RequestTimings.Phase[] PHASES = RequestTimings.Phase.values();
+
+    private final Map<Method, HandlerLatency> handlers = new ConcurrentHashMap<>();
+
+    void record(HandlerMethod handlerMethod, RequestTimings timings){
+        // the lambda and the name are only built for the first request of a handler
+        HandlerLatency latency = handlers.get(handlerMethod.getMethod());
+        if(latency == null){
+            latency = handlers.computeIfAbsent(handlerMethod.getMethod(),
+                    key -> new HandlerLatency(QueryBudgetInterceptor.handlerName(handlerMethod)));
+        }
+        for(RequestTimings.Phase phase : PHASES){
+            latency.histograms[phase.ordinal()].record(timings.get(phase) / 1000);
+        }
+    }
+
+    public Map<Method, HandlerLatency> getHandlers() {
+        return handlers;
+    }
+
+    public void reset(){
+        handlers.values().forEach(latency -> {
+            for(LatencyHistogram histogram : latency.histograms){
+                histogram.reset();
+            }
+        });
+    }
+
+    public static class HandlerLatency {
+        private final String name;
+        private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+
+        private HandlerLatency(String name) {
+            this.name = name;
+            for(int i = 0; i < histograms.length; i++){
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LatencyHistogram get(RequestTimings.Phase phase){
+            return histograms[phase.ordinal()];
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.springboot.blog.diagnostics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Most statements a handler may run per request, whatever the page size. Going over it is logged and
+// counted in db.request.budget.exceeded, and QueryBudgetTest fails on it for the endpoints it covers.
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    int statements();
+}
@@ -0,0 +1,78 @@
+package com.springboot.blog.diagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Tracks the statements of every handler call and publishes them per handler as db.request.* metrics.
+// A handler going over its @QueryBudget, or running one statement shape repeatedly (N+1), is logged.
+public class QueryBudgetInterceptor implements HandlerInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryBudgetInterceptor.class);
+    private static final String HANDLER_ATTRIBUTE = QueryBudgetInterceptor.class.getName() + ".handler";
+
+    private MeterRegistry meterRegistry;
+    private int repeatedStatementThreshold;
+
+    public QueryBudgetInterceptor(MeterRegistry meterRegistry, int repeatedStatementThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.repeatedStatementThreshold = repeatedStatementThreshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if(handler instanceof HandlerMethod && RequestQueryStats.current() == null){
+            RequestQueryStats.start();
+            request.setAttribute(HANDLER_ATTRIBUTE, handler);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        HandlerMethod handlerMethod = (HandlerMethod) request.getAttribute(HANDLER_ATTRIBUTE);
+        if(handlerMethod == null){
+            return;
+        }
+        request.removeAttribute(HANDLER_ATTRIBUTE);
+        RequestQueryStats stats = RequestQueryStats.stop();
+        RequestTimings timings = RequestTimings.current();
+        if(timings != null){
+            timings.add(RequestTimings.Phase.DB, stats.getNanos());
+        }
+        String name = handlerName(handlerMethod);
+
+        DistributionSummary.builder("db.request.statements").tag("handler", name).register(meterRegistry)
+                .record(stats.getStatements());
+        DistributionSummary.builder("db.request.rows").tag("handler", name).register(meterRegistry)
+                .record(stats.getRows());
+        Timer.builder("db.request.time").tag("handler", name).register(meterRegistry)
+                .record(stats.getNanos(), TimeUnit.NANOSECONDS);
+
+        QueryBudget budget = handlerMethod.getMethodAnnotation(QueryBudget.class);
+        if(budget != null && stats.getStatements() > budget.statements()){
+            Counter.builder("db.request.budget.exceeded").tag("handler", name).register(meterRegistry).increment();
+            logger.warn("{} ran {} statements, its budget is {}", name, stats.getStatements(), budget.statements());
+        }
+        Map.Entry<String, Integer> mostRepeated = stats.getMostRepeated();
+        if(mostRepeated != null && mostRepeated.getValue() >= repeatedStatementThreshold){
+            Counter.builder("db.request.repeated.statements").tag("handler", name).register(meterRegistry).increment();
+            logger.warn("{} ran the same statement {} times, N+1 queries? {}", name, mostRepeated.getValue(),
+                    mostRepeated.getKey());
+        }
+    }
+
+    static String handlerName(HandlerMethod handlerMethod){
+        return handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+    }
+}
@@ -0,0 +1,122 @@
+package com.springboot.blog.diagnostics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Counts the statements, fetched rows and execution time of connections taken while a request is
+// tracked by RequestQueryStats. Connections taken outside of a request, by the scheduled jobs for
+// example, are handed out as they are and cost nothing.
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private static Connection wrap(Connection connection){
+        if(RequestQueryStats.current() == null){
+            return connection;
+        }
+        return proxy(Connection.class, new Handler(connection) {
+            @Override
+            Object afterInvoke(Method method, Object[] args, Object result) {
+                return switch (method.getName()) {
+                    case "prepareStatement", "prepareCall" -> statement(method.getReturnType(), result, (String) args[0]);
+                    case "createStatement" -> statement(Statement.class, result, null);
+                    default -> result;
+                };
+            }
+        });
+    }
+
+    private static Object statement(Class<?> type, Object statement, String preparedSql){
+        return proxy(type, new Handler(statement) {
+            @Override
+            Object invoke(Method method, Object[] args) throws Throwable {
+                if(!method.getName().startsWith("execute")){
+                    return super.invoke(method, args);
+                }
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+                long start = System.nanoTime();
+                try{
+                    return super.invoke(method, args);
+                }finally {
+                    RequestQueryStats stats = RequestQueryStats.current();
+                    if(stats != null){
+                        stats.statementExecuted(sql, System.nanoTime() - start);
+                    }
+                }
+            }
+
+            @Override
+            Object afterInvoke(Method method, Object[] args, Object result) {
+                return result instanceof ResultSet resultSet ? resultSet(resultSet) : result;
+            }
+        });
+    }
+
+    private static ResultSet resultSet(ResultSet resultSet){
+        return proxy(ResultSet.class, new Handler(resultSet) {
+            @Override
+            Object afterInvoke(Method method, Object[] args, Object result) {
+                RequestQueryStats stats;
+                if(Boolean.TRUE.equals(result) && method.getName().equals("next")
+                        && (stats = RequestQueryStats.current()) != null){
+                    stats.rowFetched();
+                }
+                return result;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler){
+        return (T) Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private abstract static class Handler implements InvocationHandler {
+        private final Object target;
+
+        private Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            // the JDBC objects are kept in hash maps by Hibernate, the proxy must equal itself
+            switch (method.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                default: return afterInvoke(method, args, invoke(method, args));
+            }
+        }
+
+        Object invoke(Method method, Object[] args) throws Throwable {
+            try{
+                return method.invoke(target, args);
+            }catch (InvocationTargetException ex){
+                throw ex.getCause();
+            }
+        }
+
+        abstract Object afterInvoke(Method method, Object[] args, Object result);
+    }
+}
@@ -0,0 +1,55 @@
+package com.springboot.blog.diagnostics;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.Map;
+
+// Adds the statements run so far to the response headers, so a developer sees the cost of an endpoint
+// in the browser or with curl. Turned on with app.query-budget.response-headers=true, as in the dev profile.
+@ControllerAdvice
+@ConditionalOnProperty(name = "app.query-budget.response-headers", havingValue = "true")
+public class QueryStatsResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String STATEMENTS_HEADER = "X-Query-Statements";
+    public static final String ROWS_HEADER = "X-Query-Rows";
+    public static final String TIME_HEADER = "X-Query-Time-Ms";
+    public static final String BUDGET_HEADER = "X-Query-Budget";
+    // how often the statement run most often was run
+    public static final String REPEATED_HEADER = "X-Query-Repeated";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestQueryStats stats = RequestQueryStats.current();
+        if(stats == null){
+            return body;
+        }
+        HttpHeaders headers = response.getHeaders();
+        headers.set(STATEMENTS_HEADER, String.valueOf(stats.getStatements()));
+        headers.set(ROWS_HEADER, String.valueOf(stats.getRows()));
+        headers.set(TIME_HEADER, String.format("%.3f", stats.getNanos() / 1e6));
+        QueryBudget budget = returnType.getMethodAnnotation(QueryBudget.class);
+        if(budget != null){
+            headers.set(BUDGET_HEADER, String.valueOf(budget.statements()));
+        }
+        Map.Entry<String, Integer> mostRepeated = stats.getMostRepeated();
+        if(mostRepeated != null){
+            headers.set(REPEATED_HEADER, String.valueOf(mostRepeated.getValue()));
+        }
+        return body;
+    }
+}
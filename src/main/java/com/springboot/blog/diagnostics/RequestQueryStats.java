@@ -0,0 +1,65 @@
+package com.springboot.blog.diagnostics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Statements, rows and database time of the request running on the current thread. Only touched by
+// that thread, the counters need no synchronization.
+public class RequestQueryStats {
+
+    private static final ThreadLocal<RequestQueryStats> CURRENT = new ThreadLocal<>();
+    // "in (?, ?, ?)" has the same shape whatever the number of ids
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+
+    private int statements;
+    private long rows;
+    private long nanos;
+    private final Map<String, Integer> shapes = new HashMap<>();
+
+    static RequestQueryStats start(){
+        RequestQueryStats stats = new RequestQueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static RequestQueryStats stop(){
+        RequestQueryStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    // null outside of a request, nothing is counted then
+    public static RequestQueryStats current(){
+        return CURRENT.get();
+    }
+
+    void statementExecuted(String sql, long nanos){
+        statements++;
+        this.nanos += nanos;
+        if(sql != null){
+            shapes.merge(IN_LIST.matcher(sql).replaceAll("(?)"), 1, Integer::sum);
+        }
+    }
+
+    void rowFetched(){
+        rows++;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    // the statement run most often with the same shape, a sign of N+1 queries when it ran several times
+    public Map.Entry<String, Integer> getMostRepeated(){
+        return shapes.entrySet().stream().max(Map.Entry.comparingByValue()).orElse(null);
+    }
+}
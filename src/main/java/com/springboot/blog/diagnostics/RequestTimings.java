@@ -0,0 +1,82 @@
+package com.springboot.blog.diagnostics;
+
+import java.util.Arrays;
+
+// Time spent per phase by the request running on the current thread. The instance of a thread is reused
+// from request to request, so timing a phase allocates nothing.
+public class RequestTimings {
+
+    public enum Phase {
+        AUTH("auth"), DB("db"), MAPPING("mapping"), SERIALIZATION("serialization"), TOTAL("total");
+
+        private final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String metricName() {
+            return metricName;
+        }
+    }
+
+    private static final ThreadLocal<RequestTimings> CURRENT = ThreadLocal.withInitial(RequestTimings::new);
+
+    private boolean active;
+    private long start;
+    private long serializationStart;
+    private final long[] nanos = new long[Phase.values().length];
+
+    static RequestTimings start(){
+        RequestTimings timings = CURRENT.get();
+        timings.active = true;
+        timings.start = System.nanoTime();
+        timings.serializationStart = 0;
+        Arrays.fill(timings.nanos, 0);
+        return timings;
+    }
+
+    static void stop(){
+        CURRENT.get().active = false;
+    }
+
+    // null outside of a timed request
+    static RequestTimings current(){
+        RequestTimings timings = CURRENT.get();
+        return timings.active ? timings : null;
+    }
+
+    public static long begin(){
+        return System.nanoTime();
+    }
+
+    // adds the time since begin() to the phase of the current request, if there is one
+    public static void end(Phase phase, long begin){
+        RequestTimings timings = CURRENT.get();
+        if(timings.active){
+            timings.nanos[phase.ordinal()] += System.nanoTime() - begin;
+        }
+    }
+
+    void add(Phase phase, long nanos){
+        this.nanos[phase.ordinal()] += nanos;
+    }
+
+    long get(Phase phase){
+        return nanos[phase.ordinal()];
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    void serializationStarted(){
+        if(serializationStart == 0){
+            serializationStart = System.nanoTime();
+        }
+    }
+
+    long getSerializationStart() {
+        return serializationStart;
+    }
+}
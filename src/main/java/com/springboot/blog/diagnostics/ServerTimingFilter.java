@@ -0,0 +1,42 @@
+package com.springboot.blog.diagnostics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Outermost timer of a request. The phases are filled in along the way, by JwtAuthenticationFilter,
+// the statement counting, the service mappers and ServerTimingResponseAdvice, and recorded in the
+// histograms of the handler once the response is written. Requests no handler matched are not recorded.
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    private LatencyHistograms latencyHistograms;
+
+    public ServerTimingFilter(LatencyHistograms latencyHistograms) {
+        this.latencyHistograms = latencyHistograms;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RequestTimings timings = RequestTimings.start();
+        try{
+            filterChain.doFilter(request, response);
+        }finally {
+            long end = System.nanoTime();
+            if(timings.getSerializationStart() != 0){
+                timings.add(RequestTimings.Phase.SERIALIZATION, end - timings.getSerializationStart());
+            }
+            timings.add(RequestTimings.Phase.TOTAL, end - timings.getStart());
+            if(request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handlerMethod){
+                latencyHistograms.record(handlerMethod, timings);
+            }
+            RequestTimings.stop();
+        }
+    }
+}
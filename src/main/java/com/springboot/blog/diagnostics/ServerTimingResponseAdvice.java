@@ -0,0 +1,52 @@
+package com.springboot.blog.diagnostics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+// Marks the start of serialization and, with app.server-timing.response-header=true, adds the phases
+// so far as a Server-Timing header. Headers go out before the body, so serialization itself is only
+// in the histograms and "app" is the time up to it.
+@ControllerAdvice
+@ConditionalOnProperty(name = "app.server-timing.enabled", havingValue = "true", matchIfMissing = true)
+public class ServerTimingResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private boolean responseHeader;
+
+    public ServerTimingResponseAdvice(@Value("${app.server-timing.response-header:false}") boolean responseHeader) {
+        this.responseHeader = responseHeader;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestTimings timings = RequestTimings.current();
+        if(timings == null){
+            return body;
+        }
+        timings.serializationStarted();
+        if(responseHeader){
+            // statements are still being counted here, the histograms take the final figure
+            RequestQueryStats stats = RequestQueryStats.current();
+            long db = stats != null ? stats.getNanos() : 0;
+            response.getHeaders().set(SERVER_TIMING_HEADER, String.format("auth;dur=%.3f, db;dur=%.3f, mapping;dur=%.3f, app;dur=%.3f",
+                    timings.get(RequestTimings.Phase.AUTH) / 1e6, db / 1e6, timings.get(RequestTimings.Phase.MAPPING) / 1e6,
+                    (timings.getSerializationStart() - timings.getStart()) / 1e6));
+        }
+        return body;
+    }
+}
@@ -4,6 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 @Data
 @AllArgsConstructor
@@ -18,8 +21,20 @@ public class Comment {
     private String name;
     private String email;
     private String body;
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "post_id",nullable = false)
     private Post post;
 
+    // optimistic lock version, also the strong ETag of the resource
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    @UpdateTimestamp
+    private Instant lastModified;
+
+    // id handed out when the comment was accepted by the write-behind queue, null otherwise
+    @Column(name = "client_id", unique = true, length = 36)
+    private String clientId;
+
 }
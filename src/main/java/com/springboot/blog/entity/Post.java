@@ -2,8 +2,10 @@ package com.springboot.blog.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.context.annotation.EnableMBeanExport;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -13,7 +15,9 @@ import java.util.Set;
 @NoArgsConstructor
 @Entity
 @Table(
-        name="posts",uniqueConstraints = {@UniqueConstraint(columnNames = {"title"})}
+        name="posts",uniqueConstraints = {@UniqueConstraint(columnNames = {"title"})},
+        indexes = {@Index(name = "idx_posts_view_count", columnList = "view_count"),
+                @Index(name = "idx_posts_comment_count", columnList = "comment_count")}
 )
 public class Post {
     @Id
@@ -38,4 +42,21 @@ public class Post {
     @JoinColumn(name = "category_id ")
     private Category category;
 
+    // optimistic lock version, also the strong ETag of the resource
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    @UpdateTimestamp
+    private Instant lastModified;
+
+    // only ever incremented in the database by PostStatistics, never written from the entity
+    @Column(name = "view_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private long viewCount;
+
+    @Column(name = "comment_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint default 0")
+    private long commentCount;
+
 }
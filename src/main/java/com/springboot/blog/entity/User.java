@@ -1,5 +1,6 @@
 package com.springboot.blog.entity;
 
+import com.springboot.blog.security.UserChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -11,6 +12,7 @@ import java.util.Set;
 @NoArgsConstructor
 @Entity
 @Table(name = "users")
+@EntityListeners(UserChangeListener.class)
 public class User {
 
     @Id
@@ -37,7 +37,12 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
                                                                         WebRequest webRequest){
         ErrorDetails errorDetails = new ErrorDetails(new Date(),exception.getMessage(),
                 webRequest.getDescription(false));
-        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+        HttpHeaders headers = new HttpHeaders();
+        // rejected because the server is saturated, not because of the request
+        if(exception.getStatus() == HttpStatus.TOO_MANY_REQUESTS || exception.getStatus() == HttpStatus.SERVICE_UNAVAILABLE){
+            headers.set(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return new ResponseEntity<>(errorDetails, headers, exception.getStatus());
     }
 
     @ExceptionHandler(Exception.class)
@@ -0,0 +1,112 @@
+package com.springboot.blog.jobs;
+
+import com.springboot.blog.exception.BlogAPIException;
+import com.springboot.blog.payload.JobDto;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Runs long operations such as cascade deletes one at a time on a background thread and keeps their
+// status for GET /api/v1/jobs/{id}. Finished jobs are forgotten after the retention period. Jobs only
+// live in this instance and a restart abandons the queued ones, the work itself must be safe to run again.
+@Component
+public class JobRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobRegistry.class);
+
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+
+    public JobRegistry(@Value("${app.jobs.queue-capacity:100}") int queueCapacity,
+                       @Value("${app.jobs.retention-minutes:60}") long retentionMinutes) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "background-job-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.retention = Duration.ofMinutes(retentionMinutes);
+    }
+
+    // the work reports the rows it processed to the consumer it is given
+    public JobDto submit(String type, Consumer<LongConsumer> work){
+        removeExpired();
+        Job job = new Job(ids.incrementAndGet(), type);
+        jobs.put(job.id, job);
+        try{
+            executor.execute(() -> job.run(work));
+        }catch (RejectedExecutionException ex){
+            jobs.remove(job.id);
+            throw new BlogAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Too many background jobs, retry later");
+        }
+        return job.toDto();
+    }
+
+    public Optional<JobDto> get(long id){
+        removeExpired();
+        return Optional.ofNullable(jobs.get(id)).map(Job::toDto);
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    private void removeExpired(){
+        Instant oldest = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finished != null && job.finished.isBefore(oldest));
+    }
+
+    private static class Job {
+        private final long id;
+        private final String type;
+        private final Instant submitted = Instant.now();
+        private final AtomicLong processed = new AtomicLong();
+        private volatile String status = "QUEUED";
+        private volatile Instant finished;
+        private volatile String error;
+
+        private Job(long id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        private void run(Consumer<LongConsumer> work){
+            status = "RUNNING";
+            try{
+                work.accept(processed::addAndGet);
+                status = "SUCCEEDED";
+            }catch (RuntimeException ex){
+                logger.error("Job {} ({}) failed", id, type, ex);
+                error = ex.getMessage();
+                status = "FAILED";
+            }finally {
+                finished = Instant.now();
+            }
+        }
+
+        private JobDto toDto(){
+            return new JobDto(id, type, status, processed.get(), submitted, finished, error);
+        }
+    }
+}
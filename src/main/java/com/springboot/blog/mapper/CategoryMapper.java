@@ -0,0 +1,18 @@
+package com.springboot.blog.mapper;
+
+import com.springboot.blog.entity.Category;
+import com.springboot.blog.payload.CategoryDto;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface CategoryMapper {
+
+    @Mapping(target = "versionTag", source = "version")
+    CategoryDto mapToDto(Category category);
+
+    @Mapping(target = "posts", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
+    Category mapToEntity(CategoryDto categoryDto);
+}
@@ -0,0 +1,19 @@
+package com.springboot.blog.mapper;
+
+import com.springboot.blog.entity.Comment;
+import com.springboot.blog.payload.CommentDto;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+@Mapper(componentModel = "spring")
+public interface CommentMapper {
+
+    CommentDto mapToDto(Comment comment);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "post", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
+    @Mapping(target = "clientId", ignore = true)
+    Comment mapToEntity(CommentDto commentDto);
+}
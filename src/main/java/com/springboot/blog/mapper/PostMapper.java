@@ -0,0 +1,35 @@
+package com.springboot.blog.mapper;
+
+import com.springboot.blog.entity.Post;
+import com.springboot.blog.payload.PostDto;
+import com.springboot.blog.payload.PostDtoV2;
+import org.mapstruct.InjectionStrategy;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+// Implementation is generated at compile time, plain getter/setter calls instead of reflection.
+// Only category.id is read from the category association, so a lazy proxy is never initialized.
+@Mapper(componentModel = "spring", uses = CommentMapper.class, injectionStrategy = InjectionStrategy.CONSTRUCTOR)
+public interface PostMapper {
+
+    // the version tag is only set for a post read together with all of its comments
+    @Mapping(target = "categoryId", source = "category.id")
+    @Mapping(target = "versionTag", ignore = true)
+    PostDto mapToDto(Post post);
+
+    // id, comments and category are never taken from the request body
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "comments", ignore = true)
+    @Mapping(target = "category", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "lastModified", ignore = true)
+    @Mapping(target = "viewCount", ignore = true)
+    @Mapping(target = "commentCount", ignore = true)
+    Post mapToEntity(PostDto postDto);
+
+    // v2 exposes the same fields as before, tags are filled in by the controller
+    @Mapping(target = "comments", ignore = true)
+    @Mapping(target = "categoryId", ignore = true)
+    @Mapping(target = "tags", ignore = true)
+    PostDtoV2 mapToDtoV2(PostDto postDto);
+}
@@ -0,0 +1,32 @@
+package com.springboot.blog.payload;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.http.HttpStatus;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkItemResult {
+    // position of the item in the request
+    private int index;
+    private Long id;
+    private int status;
+    // reason of a failed item, null on success
+    private String message;
+
+    public static BulkItemResult succeeded(int index, Long id, HttpStatus status){
+        return new BulkItemResult(index, id, status.value(), null);
+    }
+
+    public static BulkItemResult failed(int index, Long id, HttpStatus status, String message){
+        return new BulkItemResult(index, id, status.value(), message);
+    }
+
+    @JsonIgnore
+    public boolean isSuccess(){
+        return HttpStatus.valueOf(status).is2xxSuccessful();
+    }
+}
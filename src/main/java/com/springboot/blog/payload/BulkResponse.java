@@ -0,0 +1,20 @@
+package com.springboot.blog.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class BulkResponse {
+    private int succeeded;
+    private int failed;
+    // one result per request item, in request order
+    private List<BulkItemResult> results;
+
+    public static BulkResponse of(List<BulkItemResult> results){
+        int succeeded = (int) results.stream().filter(BulkItemResult::isSuccess).count();
+        return new BulkResponse(succeeded, results.size() - succeeded, results);
+    }
+}
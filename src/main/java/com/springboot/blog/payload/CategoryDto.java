@@ -1,5 +1,6 @@
 package com.springboot.blog.payload;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -15,4 +16,8 @@ public class CategoryDto {
     private String name;
     private String description;
 
+    // version of the row this DTO was read from, see CategoryRepository.findVersionById
+    @JsonIgnore
+    private String versionTag;
+
 }
@@ -0,0 +1,16 @@
+package com.springboot.blog.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class CommentCursorResponse {
+    private List<CommentDto> content;
+    private int pageSize;
+    // pass back as the cursor parameter to get the next page, null on the last page
+    private String nextCursor;
+    private boolean last;
+}
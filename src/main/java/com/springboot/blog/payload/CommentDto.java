@@ -1,5 +1,6 @@
 package com.springboot.blog.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.NamedEntityGraph;
@@ -30,4 +31,8 @@ public class CommentDto {
     @NotEmpty
     @Size(min = 10, message = "Comment body should be min 10 characters")
     private String body;
+
+    // only set on comments created through the write-behind queue
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String clientId;
 }
@@ -0,0 +1,19 @@
+package com.springboot.blog.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+// a page of posts reduced to the fields selected with ?fields=
+@Data
+@AllArgsConstructor
+public class FieldsPageResponse {
+    private List<Map<String, Object>> content;
+    private int pageNo;
+    private int pageSize;
+    private long totalElements;
+    private int totalPages;
+    private  boolean last;
+}
@@ -0,0 +1,24 @@
+package com.springboot.blog.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobDto {
+    private long id;
+    private String type;
+    // QUEUED, RUNNING, SUCCEEDED or FAILED
+    private String status;
+    // rows deleted so far
+    private long processed;
+    private Instant submitted;
+    private Instant finished;
+    private String error;
+}
@@ -0,0 +1,15 @@
+package com.springboot.blog.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JwtKeyRotationDto {
+    // new Base64 encoded HMAC secret, at least 256 bits
+    private String secret;
+}
@@ -0,0 +1,18 @@
+package com.springboot.blog.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PostCursorResponse {
+    private List<PostDto> content;
+    private int pageSize;
+    // pass back as the cursor parameter to get the next page, null on the last page
+    private String nextCursor;
+    private boolean last;
+    // only counted when requested with includeTotal=true
+    private Long totalElements;
+}
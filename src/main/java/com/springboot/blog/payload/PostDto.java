@@ -1,5 +1,6 @@
 package com.springboot.blog.payload;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -45,4 +46,20 @@ public class PostDto {
             description = "Blog Post Category"
     )
     private Long categoryId;
+
+    @Schema(
+            description = "Blog Post view count, may lag behind by up to the post cache TTL (10 minutes). It is not part of the version, the weak ETag of the post stays the same while it changes",
+            accessMode = Schema.AccessMode.READ_ONLY
+    )
+    private long viewCount;
+
+    @Schema(
+            description = "Blog Post comment count, may lag behind by up to the post cache TTL (10 minutes). It is not part of the version, the weak ETag of the post stays the same while it changes",
+            accessMode = Schema.AccessMode.READ_ONLY
+    )
+    private long commentCount;
+
+    // version of the post and comments this DTO was read from, see PostRepository.findVersionById
+    @JsonIgnore
+    private String versionTag;
 }
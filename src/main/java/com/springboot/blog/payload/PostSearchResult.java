@@ -0,0 +1,17 @@
+package com.springboot.blog.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostSearchResult {
+    private long id;
+    private String title;
+    private String description;
+    private Long categoryId;
+    // BM25F relevance, only comparable between results of the same query
+    private float score;
+}
@@ -0,0 +1,20 @@
+package com.springboot.blog.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// list representation of a post, without its comments and with only the start of its content
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PostSummaryDto {
+    private Long id;
+    private String title;
+    private String description;
+    private Long categoryId;
+    private Long commentCount;
+    private Long viewCount;
+    // first AppConstants.POST_EXCERPT_LENGTH characters of the content
+    private String excerpt;
+}
@@ -0,0 +1,51 @@
+package com.springboot.blog.payload;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+// Version of a resource or a listing, looked up without loading the resource itself, so that a
+// conditional GET can be answered with 304 before any body is read or serialized.
+@Getter
+public class ResourceVersion {
+    private String tag;
+    private Instant lastModified;
+
+    public ResourceVersion(Long version, Instant lastModified) {
+        this.tag = String.valueOf(version);
+        this.lastModified = lastModified;
+    }
+
+    // version of a listing: any insert, update or delete changes at least one of the parts
+    public ResourceVersion(Long count, Long versionSum, Long maxId, Instant lastModified) {
+        this.tag = count + "." + versionSum + "." + maxId;
+        this.lastModified = lastModified;
+    }
+
+    // version of a post with its comments: the post row version and the same parts as a listing for the
+    // comments, Last-Modified is the later of the post and its most recently changed comment
+    public ResourceVersion(Long version, Instant lastModified, Long commentCount, Long commentVersionSum,
+                           Long maxCommentId, Instant commentsLastModified) {
+        this.tag = version + "." + commentCount + "." + commentVersionSum + "." + maxCommentId;
+        this.lastModified = lastModified == null || (commentsLastModified != null && commentsLastModified.isAfter(lastModified))
+                ? commentsLastModified : lastModified;
+    }
+
+    // strong ETag, the representation name keeps different views of the same entity apart
+    public String eTag(String representation){
+        return eTag(representation, tag);
+    }
+
+    public static String eTag(String representation, String tag){
+        return "\"" + representation + "-" + tag + "\"";
+    }
+
+    // weak ETag, for representations with parts that change without a new version, like the post counts
+    public static String weakETag(String representation, String tag){
+        return "W/" + eTag(representation, tag);
+    }
+
+    public long lastModifiedMillis(){
+        return lastModified != null ? lastModified.toEpochMilli() : -1;
+    }
+}
@@ -1,8 +1,24 @@
 package com.springboot.blog.repository;
 
 import com.springboot.blog.entity.Category;
+import com.springboot.blog.payload.ResourceVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
 
 public interface CategoryRepository extends JpaRepository<Category,Long> {
 
+    @Query("select new com.springboot.blog.payload.ResourceVersion(c.version, c.lastModified) from Category c where c.id = :id")
+    Optional<ResourceVersion> findVersionById(@Param("id") Long id);
+
+    @Query("select new com.springboot.blog.payload.ResourceVersion(count(c), coalesce(sum(c.version), 0), " +
+            "coalesce(max(c.id), 0), max(c.lastModified)) from Category c")
+    ResourceVersion findListVersion();
+
+    @Query("select c.id from Category c where c.id in :ids")
+    Set<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
 }
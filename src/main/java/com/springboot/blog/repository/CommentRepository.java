@@ -1,10 +1,61 @@
 package com.springboot.blog.repository;
 
 import com.springboot.blog.entity.Comment;
+import com.springboot.blog.payload.ResourceVersion;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
-public interface CommentRepository extends JpaRepository<Comment,Long> {
+public interface CommentRepository extends JpaRepository<Comment,Long>, CommentRepositoryCustom {
     List<Comment> findByPostId(long postId);
+
+    // keyset pagination by id, seeks on the post_id foreign key index
+    List<Comment> findByPostId(long postId, Pageable pageable);
+
+    List<Comment> findByPostIdAndIdGreaterThan(long postId, long id, Pageable pageable);
+
+    // ownership is part of the where clause, post_id is read from the comment row without a join
+    Optional<Comment> findByIdAndPostId(Long id, Long postId);
+
+    // bumps the version by hand, a bulk update bypasses the optimistic lock and @UpdateTimestamp
+    @Modifying
+    @Query("update Comment c set c.name = :name, c.email = :email, c.body = :body, c.version = c.version + 1, " +
+            "c.lastModified = :now where c.id = :id and c.post.id = :postId")
+    int updateByIdAndPostId(@Param("id") Long id, @Param("postId") Long postId, @Param("name") String name,
+                            @Param("email") String email, @Param("body") String body, @Param("now") Instant now);
+
+    @Query("select new com.springboot.blog.payload.ResourceVersion(c.version, c.lastModified) from Comment c " +
+            "where c.id = :id and c.post.id = :postId")
+    Optional<ResourceVersion> findVersionByIdAndPostId(@Param("id") Long id, @Param("postId") Long postId);
+
+    @Query("select c.id from Comment c where c.post.id = :postId and c.id in :ids")
+    Set<Long> findIdsByPostIdAndIdIn(@Param("postId") Long postId, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from Comment c where c.post.id = :postId and c.id in :ids")
+    int deleteByPostIdAndIdIn(@Param("postId") Long postId, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from Comment c where c.post.id in :postIds")
+    int deleteByPostIdIn(@Param("postIds") Collection<Long> postIds);
+
+    List<Comment> findByPostIdIn(Collection<Long> postIds);
+
+    // chunks of ids for the set based cascade delete
+    @Query("select c.id from Comment c where c.post.id = :postId order by c.id")
+    List<Long> findIdsByPostId(@Param("postId") Long postId, Pageable pageable);
+
+    @Query("select c.id from Comment c where c.post.category.id = :categoryId order by c.id")
+    List<Long> findIdsByPostCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query("select c.clientId from Comment c where c.clientId in :clientIds")
+    Set<String> findClientIdsByClientIdIn(@Param("clientIds") Collection<String> clientIds);
 }
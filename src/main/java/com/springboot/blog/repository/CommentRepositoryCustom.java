@@ -0,0 +1,11 @@
+package com.springboot.blog.repository;
+
+import com.springboot.blog.entity.Comment;
+
+import java.util.List;
+
+public interface CommentRepositoryCustom {
+
+    // inserts new comments as batched statements and sets their generated ids, the comments stay unmanaged
+    void batchInsert(List<Comment> comments);
+}
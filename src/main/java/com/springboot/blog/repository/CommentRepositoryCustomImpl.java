@@ -0,0 +1,40 @@
+package com.springboot.blog.repository;
+
+import com.springboot.blog.entity.Comment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+public class CommentRepositoryCustomImpl implements CommentRepositoryCustom {
+
+    private static final String INSERT_SQL = "insert into comments (name, email, body, post_id, " +
+            "version, last_modified, client_id) values (?, ?, ?, ?, 0, ?, ?)";
+
+    private JdbcTemplate jdbcTemplate;
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int batchSize;
+
+    public CommentRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void batchInsert(List<Comment> comments) {
+        Timestamp now = Timestamp.from(Instant.now());
+        // timestamps are stored in UTC, the same way hibernate writes Instant columns
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        JdbcBatchInserter.insert(jdbcTemplate, INSERT_SQL, comments, batchSize, (statement, comment) -> {
+            statement.setString(1, comment.getName());
+            statement.setString(2, comment.getEmail());
+            statement.setString(3, comment.getBody());
+            statement.setLong(4, comment.getPost().getId());
+            statement.setTimestamp(5, now, utc);
+            statement.setString(6, comment.getClientId());
+        }, Comment::setId);
+    }
+}
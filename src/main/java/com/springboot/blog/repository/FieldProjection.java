@@ -0,0 +1,75 @@
+package com.springboot.blog.repository;
+
+import com.springboot.blog.entity.Category;
+import com.springboot.blog.entity.Comment;
+import com.springboot.blog.entity.Post;
+import com.springboot.blog.exception.BlogAPIException;
+import org.springframework.http.HttpStatus;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// The fields a client may select with ?fields= on a resource: response field -> entity attribute path
+// for columns, plus associations that are loaded by a separate query when they are asked for.
+public class FieldProjection<T> {
+
+    public static final String POST_COMMENTS = "comments";
+
+    public static final FieldProjection<Post> POST = new FieldProjection<>(Post.class,
+            columns("id", "id", "title", "title", "description", "description", "content", "content",
+                    "categoryId", "category.id", "viewCount", "viewCount", "commentCount", "commentCount"),
+            Set.of(POST_COMMENTS));
+    public static final FieldProjection<Comment> COMMENT = new FieldProjection<>(Comment.class,
+            columns("id", "id", "name", "name", "email", "email", "body", "body"), Set.of());
+    public static final FieldProjection<Category> CATEGORY = new FieldProjection<>(Category.class,
+            columns("id", "id", "name", "name", "description", "description"), Set.of());
+
+    private final Class<T> entityClass;
+    private final Map<String, String> columns;
+    private final Set<String> associations;
+
+    private FieldProjection(Class<T> entityClass, Map<String, String> columns, Set<String> associations) {
+        this.entityClass = entityClass;
+        this.columns = columns;
+        this.associations = associations;
+    }
+
+    // the requested fields in request order, unknown names are rejected so a typo does not silently drop data
+    public Set<String> parse(String fields){
+        Set<String> selected = new LinkedHashSet<>();
+        for(String field : fields.split(",")){
+            String name = field.trim();
+            if(name.isEmpty()){
+                continue;
+            }
+            if(!columns.containsKey(name) && !associations.contains(name)){
+                throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Unknown field '" + name + "', allowed fields are "
+                        + String.join(",", columns.keySet()) + (associations.isEmpty() ? "" : "," + String.join(",", associations)));
+            }
+            selected.add(name);
+        }
+        if(selected.isEmpty()){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "At least one field should be selected");
+        }
+        return selected;
+    }
+
+    Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    // entity attribute path of a column field, null for an association
+    String pathOf(String field){
+        return columns.get(field);
+    }
+
+    private static Map<String, String> columns(String... fieldsAndPaths){
+        Map<String, String> columns = new LinkedHashMap<>();
+        for(int i = 0; i < fieldsAndPaths.length; i += 2){
+            columns.put(fieldsAndPaths[i], fieldsAndPaths[i + 1]);
+        }
+        return columns;
+    }
+}
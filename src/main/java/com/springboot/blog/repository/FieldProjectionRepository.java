@@ -0,0 +1,101 @@
+package com.springboot.blog.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Reads only the selected columns of an entity as a tuple query, each row comes back as an ordered
+// field -> value map that Jackson writes as is. Association fields are left to the caller.
+@Repository
+public class FieldProjectionRepository {
+
+    private EntityManager entityManager;
+
+    public FieldProjectionRepository(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public <T> List<Map<String, Object>> findAll(FieldProjection<T> projection, Set<String> fields,
+                                                 Specification<T> specification, Sort sort){
+        return createQuery(projection, fields, specification, sort).getResultList().stream()
+                .map(tuple -> toMap(projection, fields, tuple)).toList();
+    }
+
+    public <T> Page<Map<String, Object>> findAll(FieldProjection<T> projection, Set<String> fields,
+                                                 Specification<T> specification, Pageable pageable){
+        TypedQuery<Tuple> query = createQuery(projection, fields, specification, pageable.getSort());
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize());
+        List<Map<String, Object>> content = query.getResultList().stream()
+                .map(tuple -> toMap(projection, fields, tuple)).toList();
+        return new PageImpl<>(content, pageable, count(projection, specification));
+    }
+
+    private <T> TypedQuery<Tuple> createQuery(FieldProjection<T> projection, Set<String> fields,
+                                              Specification<T> specification, Sort sort){
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<T> root = query.from(projection.getEntityClass());
+        List<Selection<?>> selections = new ArrayList<>();
+        for(String field : fields){
+            String path = projection.pathOf(field);
+            if(path != null){
+                selections.add(path(root, path).alias(field));
+            }
+        }
+        query.multiselect(selections);
+        if(specification != null){
+            query.where(specification.toPredicate(root, query, criteriaBuilder));
+        }
+        query.orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+        return entityManager.createQuery(query);
+    }
+
+    private <T> long count(FieldProjection<T> projection, Specification<T> specification){
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<T> root = query.from(projection.getEntityClass());
+        query.select(criteriaBuilder.count(root));
+        if(specification != null){
+            query.where(specification.toPredicate(root, query, criteriaBuilder));
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    // "category.id" navigates to the foreign key column, it does not join the category table
+    private static Path<?> path(Root<?> root, String path){
+        Path<?> current = root;
+        for(String attribute : path.split("\\.")){
+            current = current.get(attribute);
+        }
+        return current;
+    }
+
+    private static Map<String, Object> toMap(FieldProjection<?> projection, Set<String> fields, Tuple tuple){
+        Map<String, Object> row = new LinkedHashMap<>();
+        for(String field : fields){
+            if(projection.pathOf(field) != null){
+                row.put(field, tuple.get(field));
+            }
+        }
+        return row;
+    }
+}
@@ -0,0 +1,49 @@
+package com.springboot.blog.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// Hibernate cannot batch inserts into IDENTITY columns, it needs every generated id right away.
+// The bulk apis insert over plain JDBC instead, in batches of batchSize rows, and read the generated
+// keys of each batch back in insert order. The statements join the surrounding JPA transaction.
+class JdbcBatchInserter {
+
+    interface StatementBinder<T> {
+        void bind(PreparedStatement statement, T item) throws SQLException;
+    }
+
+    static <T> void insert(JdbcTemplate jdbcTemplate, String sql, List<T> items, int batchSize,
+                           StatementBinder<T> binder, BiConsumer<T, Long> idSetter){
+        if(items.isEmpty()){
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try(PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)){
+                for(int from = 0; from < items.size(); from += batchSize){
+                    List<T> batch = items.subList(from, Math.min(from + batchSize, items.size()));
+                    for(T item : batch){
+                        binder.bind(statement, item);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    try(ResultSet keys = statement.getGeneratedKeys()){
+                        for(T item : batch){
+                            if(!keys.next()){
+                                throw new SQLException("Driver did not return a generated key for every batched row");
+                            }
+                            idSetter.accept(item, keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
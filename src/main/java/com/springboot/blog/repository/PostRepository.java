@@ -1,12 +1,96 @@
 package com.springboot.blog.repository;
 
 import com.springboot.blog.entity.Post;
+import com.springboot.blog.payload.PostSummaryDto;
+import com.springboot.blog.payload.ResourceVersion;
+import com.springboot.blog.utils.AppConstants;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-public interface PostRepository extends JpaRepository<Post,Long> {
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface PostRepository extends JpaRepository<Post,Long>, PostRepositoryCustom {
+
+    // comments are counted in the database and the content is cut there, neither is loaded
+    String SUMMARY_SELECT = "select new com.springboot.blog.payload.PostSummaryDto(p.id, p.title, p.description, " +
+            "p.category.id, (select count(c) from Comment c where c.post = p), p.viewCount, " +
+            "substring(p.content, 1, " + AppConstants.POST_EXCERPT_LENGTH + ")) from Post p";
     //
 
+    @EntityGraph(attributePaths = "comments")
     List<Post> findByCategoryId(Long categoryId);
+
+    @EntityGraph(attributePaths = "comments")
+    Optional<Post> findWithCommentsById(Long id);
+
+    // initializes the comments of an already loaded page of posts with one query, a fetch join
+    // can not be combined with the page query itself without paginating in memory
+    @Query("select distinct p from Post p left join fetch p.comments where p.id in :ids")
+    List<Post> findWithCommentsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // keyset pagination, List results skip the count query and the seek uses the id / title indexes
+    List<Post> findAllBy(Pageable pageable);
+
+    List<Post> findByIdGreaterThan(Long id, Pageable pageable);
+
+    List<Post> findByIdLessThan(Long id, Pageable pageable);
+
+    List<Post> findByTitleGreaterThan(String title, Pageable pageable);
+
+    List<Post> findByTitleLessThan(String title, Pageable pageable);
+
+    // a post embeds its comments, so its version combines the post row with a version of its comments
+    // read through the post_id index, comment writes never lock the post row
+    @Query("select new com.springboot.blog.payload.ResourceVersion(p.version, p.lastModified, count(c), " +
+            "coalesce(sum(c.version), 0), coalesce(max(c.id), 0), max(c.lastModified)) " +
+            "from Post p left join p.comments c where p.id = :id group by p.id, p.version, p.lastModified")
+    Optional<ResourceVersion> findVersionById(@Param("id") Long id);
+
+    @Query("select p.id from Post p where p.category.id = :categoryId order by p.id")
+    List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId, Pageable pageable);
+
+    @Query("select p.id from Post p where p.id in :ids")
+    Set<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select p.title from Post p where p.title in :titles")
+    Set<String> findTitlesByTitleIn(@Param("titles") Collection<String> titles);
+
+    List<Post> findByTitleIn(Collection<String> titles);
+
+    // read in chunks of the fetch size, the caller keeps the stream open in a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select p from Post p")
+    Stream<Post> streamAll();
+
+    @Query(value = SUMMARY_SELECT, countQuery = "select count(p) from Post p")
+    Page<PostSummaryDto> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " where p.category.id = :categoryId")
+    List<PostSummaryDto> findSummariesByCategoryId(@Param("categoryId") Long categoryId);
+
+    // top of the view_count / comment_count indexes, the page only sets the limit
+    @Query(SUMMARY_SELECT + " order by p.viewCount desc, p.id desc")
+    List<PostSummaryDto> findMostViewed(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " order by p.commentCount desc, p.id desc")
+    List<PostSummaryDto> findMostCommented(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " where p.id in :ids")
+    List<PostSummaryDto> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // post id and category id pairs, the category is read from the foreign key without a join
+    @Query("select p.id, p.category.id from Post p where p.id in :ids")
+    List<Object[]> findCategoryIdsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,11 @@
+package com.springboot.blog.repository;
+
+import com.springboot.blog.entity.Post;
+
+import java.util.List;
+
+public interface PostRepositoryCustom {
+
+    // inserts new posts as batched statements and sets their generated ids, the posts stay unmanaged
+    void batchInsert(List<Post> posts);
+}
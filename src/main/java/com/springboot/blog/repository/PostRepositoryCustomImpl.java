@@ -0,0 +1,39 @@
+package com.springboot.blog.repository;
+
+import com.springboot.blog.entity.Post;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+public class PostRepositoryCustomImpl implements PostRepositoryCustom {
+
+    private static final String INSERT_SQL = "insert into posts (title, description, content, category_id, " +
+            "version, last_modified) values (?, ?, ?, ?, 0, ?)";
+
+    private JdbcTemplate jdbcTemplate;
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int batchSize;
+
+    public PostRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void batchInsert(List<Post> posts) {
+        Timestamp now = Timestamp.from(Instant.now());
+        // timestamps are stored in UTC, the same way hibernate writes Instant columns
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        JdbcBatchInserter.insert(jdbcTemplate, INSERT_SQL, posts, batchSize, (statement, post) -> {
+            statement.setString(1, post.getTitle());
+            statement.setString(2, post.getDescription());
+            statement.setString(3, post.getContent());
+            statement.setLong(4, post.getCategory().getId());
+            statement.setTimestamp(5, now, utc);
+        }, Post::setId);
+    }
+}
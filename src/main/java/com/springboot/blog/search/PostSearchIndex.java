@@ -0,0 +1,308 @@
+package com.springboot.blog.search;
+
+import com.springboot.blog.entity.Post;
+import com.springboot.blog.payload.PostSearchResult;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In memory inverted index over the title, description and content of the posts, ranked with BM25F.
+// Queries never touch the database: postings keep the per field term frequencies and documents keep
+// what a search result shows. The index is built at startup by PostSearchIndexLoader and kept up to
+// date by the post service once the writing transaction has committed.
+@Component
+public class PostSearchIndex {
+
+    private static final int TITLE = 0;
+    private static final int DESCRIPTION = 1;
+    private static final int CONTENT = 2;
+    // a title match weighs three times a content match
+    private static final float[] FIELD_WEIGHTS = {3.0f, 1.5f, 1.0f};
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // shorter prefixes expand to a large part of the dictionary
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_EXPANSIONS = 100;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // sorted, so a prefix query is a range scan of the dictionary
+    private final TreeMap<String, Map<Long, int[]>> postings = new TreeMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final long[] totalFieldLengths = new long[3];
+    // deletes seen while the loader streams the table, so it does not add the rows back
+    private final Set<Long> removedWhileBuilding = new HashSet<>();
+    private boolean building;
+
+    // index a created or updated post once the current transaction commits
+    public void index(Post post){
+        Document document = new Document(post);
+        afterCommit(() -> add(document, false));
+    }
+
+    // remove a deleted post once the current transaction commits
+    public void remove(long postId){
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try{
+                unlink(postId);
+                if(building){
+                    removedWhileBuilding.add(postId);
+                }
+            }finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // remove all posts of a deleted category once the current transaction commits
+    public void removeCategory(long categoryId){
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try{
+                List<Long> postIds = documents.values().stream()
+                        .filter(document -> document.categoryId != null && document.categoryId == categoryId)
+                        .map(document -> document.id).toList();
+                for(Long postId : postIds){
+                    unlink(postId);
+                    if(building){
+                        removedWhileBuilding.add(postId);
+                    }
+                }
+            }finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    void startBuilding(){
+        lock.writeLock().lock();
+        try{
+            building = true;
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // called by the loader for every row, a version the service already indexed wins over the loaded one
+    void load(Post post){
+        add(new Document(post), true);
+    }
+
+    void finishBuilding(){
+        lock.writeLock().lock();
+        try{
+            building = false;
+            removedWhileBuilding.clear();
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size(){
+        lock.readLock().lock();
+        try{
+            return documents.size();
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Terms are OR-ed and ranked, a term ending with "*" matches every term starting with it.
+    public List<PostSearchResult> search(String query, Long categoryId, int limit){
+        List<List<String>> clauses = parse(query);
+        if(clauses.isEmpty()){
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try{
+            int documentCount = documents.size();
+            if(documentCount == 0){
+                return Collections.emptyList();
+            }
+            float[] averageLengths = new float[3];
+            for(int field = 0; field < 3; field++){
+                averageLengths[field] = Math.max(1f, (float) totalFieldLengths[field] / documentCount);
+            }
+
+            Map<Long, Float> scores = new HashMap<>();
+            for(List<String> clause : clauses){
+                // a prefix clause scores a post by its best matching expansion, not by the sum of them
+                Map<Long, Float> clauseScores = new HashMap<>();
+                for(String term : expand(clause)){
+                    Map<Long, int[]> termPostings = postings.get(term);
+                    if(termPostings == null){
+                        continue;
+                    }
+                    double idf = Math.log(1 + (documentCount - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                    for(Map.Entry<Long, int[]> posting : termPostings.entrySet()){
+                        Document document = documents.get(posting.getKey());
+                        if(categoryId != null && !categoryId.equals(document.categoryId)){
+                            continue;
+                        }
+                        float score = (float) (idf * saturate(posting.getValue(), document.lengths, averageLengths));
+                        clauseScores.merge(posting.getKey(), score, Math::max);
+                    }
+                }
+                clauseScores.forEach((postId, score) -> scores.merge(postId, score, Float::sum));
+            }
+
+            // keep the best "limit" posts in a min heap instead of sorting every match
+            PriorityQueue<Map.Entry<Long, Float>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for(Map.Entry<Long, Float> score : scores.entrySet()){
+                if(top.size() < limit){
+                    top.add(score);
+                }else if(score.getValue() > top.peek().getValue()){
+                    top.poll();
+                    top.add(score);
+                }
+            }
+            List<PostSearchResult> results = new ArrayList<>(top.size());
+            for(Map.Entry<Long, Float> score : top){
+                Document document = documents.get(score.getKey());
+                results.add(new PostSearchResult(document.id, document.title, document.description,
+                        document.categoryId, score.getValue()));
+            }
+            results.sort(Comparator.comparing(PostSearchResult::getScore).reversed()
+                    .thenComparing(PostSearchResult::getId));
+            return results;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // BM25F: length normalized, weighted term frequency of all fields, saturated once
+    private static double saturate(int[] frequencies, int[] lengths, float[] averageLengths){
+        double frequency = 0;
+        for(int field = 0; field < 3; field++){
+            if(frequencies[field] > 0){
+                frequency += FIELD_WEIGHTS[field] * frequencies[field]
+                        / (1 - B + B * lengths[field] / averageLengths[field]);
+            }
+        }
+        return frequency / (K1 + frequency);
+    }
+
+    // one clause per query term, a clause is a single term or the prefix it was written as
+    private static List<List<String>> parse(String query){
+        List<List<String>> clauses = new ArrayList<>();
+        for(String part : query.trim().split("\\s+")){
+            List<String> terms = Tokenizer.tokenize(part);
+            if(terms.isEmpty()){
+                continue;
+            }
+            boolean prefix = part.endsWith("*") && terms.get(terms.size() - 1).length() >= MIN_PREFIX_LENGTH;
+            for(int i = 0; i < terms.size(); i++){
+                String term = terms.get(i);
+                clauses.add(prefix && i == terms.size() - 1 ? List.of(term, "*") : List.of(term));
+            }
+        }
+        return clauses;
+    }
+
+    private List<String> expand(List<String> clause){
+        if(clause.size() == 1){
+            return clause;
+        }
+        String prefix = clause.get(0);
+        SortedMap<String, Map<Long, int[]>> range = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+        return range.keySet().stream().limit(MAX_PREFIX_EXPANSIONS).toList();
+    }
+
+    private void add(Document document, boolean loaded){
+        lock.writeLock().lock();
+        try{
+            if(loaded && removedWhileBuilding.contains(document.id)){
+                return;
+            }
+            Document current = documents.get(document.id);
+            if(current != null && current.version > document.version){
+                return;
+            }
+            unlink(document.id);
+            documents.put(document.id, document);
+            for(int field = 0; field < 3; field++){
+                totalFieldLengths[field] += document.lengths[field];
+            }
+            document.frequencies.forEach((term, frequencies) ->
+                    postings.computeIfAbsent(term, key -> new HashMap<>()).put(document.id, frequencies));
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void unlink(long postId){
+        Document document = documents.remove(postId);
+        if(document == null){
+            return;
+        }
+        for(int field = 0; field < 3; field++){
+            totalFieldLengths[field] -= document.lengths[field];
+        }
+        for(String term : document.frequencies.keySet()){
+            Map<Long, int[]> termPostings = postings.get(term);
+            termPostings.remove(postId);
+            if(termPostings.isEmpty()){
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable update){
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        }else{
+            update.run();
+        }
+    }
+
+    // what the index keeps of a post, tokenized before the write lock is taken
+    private static class Document {
+        private final long id;
+        private final long version;
+        private final Long categoryId;
+        private final String title;
+        private final String description;
+        private final int[] lengths = new int[3];
+        // term -> frequency in title, description and content
+        private final Map<String, int[]> frequencies = new HashMap<>();
+
+        private Document(Post post) {
+            this.id = post.getId();
+            this.version = post.getVersion();
+            this.categoryId = post.getCategory() != null ? post.getCategory().getId() : null;
+            this.title = post.getTitle();
+            this.description = post.getDescription();
+            addField(TITLE, post.getTitle());
+            addField(DESCRIPTION, post.getDescription());
+            addField(CONTENT, post.getContent());
+        }
+
+        private void addField(int field, String text){
+            List<String> terms = Tokenizer.tokenize(text);
+            lengths[field] = terms.size();
+            for(String term : terms){
+                frequencies.computeIfAbsent(term, key -> new int[3])[field]++;
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.springboot.blog.search;
+
+import com.springboot.blog.entity.Post;
+import com.springboot.blog.repository.PostRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+@Component
+public class PostSearchIndexLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostSearchIndexLoader.class);
+
+    private PostSearchIndex postSearchIndex;
+    private PostRepository postRepository;
+    private EntityManager entityManager;
+
+    public PostSearchIndexLoader(PostSearchIndex postSearchIndex, PostRepository postRepository,
+                                 EntityManager entityManager) {
+        this.postSearchIndex = postSearchIndex;
+        this.postRepository = postRepository;
+        this.entityManager = entityManager;
+    }
+
+    // streams every post into the index once the application is up, writes made meanwhile are kept
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load(){
+        long start = System.currentTimeMillis();
+        postSearchIndex.startBuilding();
+        try(Stream<Post> posts = postRepository.streamAll()){
+            posts.forEach(post -> {
+                postSearchIndex.load(post);
+                entityManager.detach(post);
+            });
+        }finally {
+            postSearchIndex.finishBuilding();
+        }
+        logger.info("Indexed {} posts for search in {} ms", postSearchIndex.size(), System.currentTimeMillis() - start);
+    }
+}
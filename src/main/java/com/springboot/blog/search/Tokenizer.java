@@ -0,0 +1,30 @@
+package com.springboot.blog.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Splits text into lower case terms of letters and digits, everything else is a separator.
+public class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    public static List<String> tokenize(String text){
+        List<String> terms = new ArrayList<>();
+        if(text == null){
+            return terms;
+        }
+        int start = -1;
+        for(int i = 0; i <= text.length(); i++){
+            boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if(termChar && start < 0){
+                start = i;
+            }else if(!termChar && start >= 0){
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
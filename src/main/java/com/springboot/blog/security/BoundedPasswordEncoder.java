@@ -0,0 +1,98 @@
+package com.springboot.blog.security;
+
+import com.springboot.blog.exception.BlogAPIException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the hashing of another PasswordEncoder (BCrypt) on a small pool of its own, so a burst of logins
+// or registrations uses at most `threads` cores and leaves the rest to the other requests. Work beyond
+// the queue capacity is rejected at once with 429, work that waits longer than the timeout gets 503.
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long timeout,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("password.hashing").tag("operation", "encode").register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing").tag("operation", "matches").register(meterRegistry);
+        this.rejected = Counter.builder("password.hashing.rejected").register(meterRegistry);
+        Gauge.builder("password.hashing.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword), encodeTimer);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    // upgrading costs one more hash on a successful login, skip it while others are waiting for the pool
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword) && executor.getQueue().isEmpty();
+    }
+
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> hashing, Timer timer){
+        Future<T> future;
+        try{
+            // the timer only measures the hashing, not the time spent in the queue
+            future = executor.submit(() -> timer.recordCallable(hashing));
+        }catch (RejectedExecutionException ex){
+            rejected.increment();
+            throw new BlogAPIException(HttpStatus.TOO_MANY_REQUESTS, "Too many password checks in progress, retry later");
+        }
+        try{
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        }catch (TimeoutException ex){
+            future.cancel(true);
+            throw new BlogAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Password check timed out, retry later");
+        }catch (InterruptedException ex){
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BlogAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Password check interrupted, retry later");
+        }catch (ExecutionException ex){
+            if(ex.getCause() instanceof RuntimeException runtimeException){
+                throw runtimeException;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.springboot.blog.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Caches the user resolved for a validated JWT until the token expires, but no longer than the maximum
+// age, so a repeated token skips the signature check and the user lookup. The maximum age bounds how long
+// a changed role or a deleted account goes unnoticed. Keyed by a SHA-256 digest, never the raw token.
+// Entries are tagged with the signing key generation they were validated under and are misses once
+// the keys are rotated, so the grace period of the retired key applies to them.
+@Component
+public class JwtAuthenticationCache {
+
+    private Cache<String, CachedUser> cache;
+    private JwtTokenProvider jwtTokenProvider;
+
+    public JwtAuthenticationCache(@Value("${app.jwt-cache-maximum-size:10000}") long maximumSize,
+                                  @Value("${app.jwt-cache-maximum-age-milliseconds:300000}") long maximumAge,
+                                  JwtTokenProvider jwtTokenProvider, MeterRegistry meterRegistry) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilTokenExpiry(TimeUnit.MILLISECONDS.toNanos(maximumAge)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwtAuthentication");
+    }
+
+    // get the cached user for a token, or null when the token has not been seen or has expired
+    public UserDetails get(String token){
+        CachedUser cachedUser = cache.getIfPresent(digest(token));
+        if(cachedUser == null || cachedUser.expiresAt <= System.currentTimeMillis()
+                || cachedUser.keyGeneration != jwtTokenProvider.getKeyGeneration()){
+            return null;
+        }
+        return cachedUser.userDetails;
+    }
+
+    // keyGeneration is the one read before the token was validated, an entry validated under keys that
+    // were rotated meanwhile is never served
+    public void put(String token, UserDetails userDetails, Date expiration, long keyGeneration){
+        if(expiration == null){
+            return;
+        }
+        // the password hash is not needed once the token is validated
+        if(userDetails instanceof CredentialsContainer){
+            ((CredentialsContainer) userDetails).eraseCredentials();
+        }
+        cache.put(digest(token), new CachedUser(userDetails, expiration.getTime(), keyGeneration));
+    }
+
+    public void invalidateAll(){
+        cache.invalidateAll();
+    }
+
+    // drop every token of a user, the username is the one of the cached UserDetails
+    public void invalidateUser(String username){
+        cache.asMap().values().removeIf(cachedUser -> cachedUser.userDetails.getUsername().equals(username));
+    }
+
+    private String digest(String token){
+        try{
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        }catch (NoSuchAlgorithmException ex){
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static class CachedUser {
+        private final UserDetails userDetails;
+        private final long expiresAt;
+        private final long keyGeneration;
+
+        private CachedUser(UserDetails userDetails, long expiresAt, long keyGeneration) {
+            this.userDetails = userDetails;
+            this.expiresAt = expiresAt;
+            this.keyGeneration = keyGeneration;
+        }
+    }
+
+    private static class UntilTokenExpiry implements Expiry<String, CachedUser> {
+
+        private final long maximumAge;
+
+        private UntilTokenExpiry(long maximumAge) {
+            this.maximumAge = maximumAge;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, CachedUser value, long currentTime) {
+            long remainingMillis = value.expiresAt - System.currentTimeMillis();
+            return Math.min(TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0)), maximumAge);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedUser value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedUser value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.springboot.blog.security;
 
+import com.springboot.blog.diagnostics.RequestTimings;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,13 +24,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtTokenProvider jwtTokenProvider;
     private CustomUserDetailsService customUserDetailsService;
     private UserDetailsService userDetailsService;
+    private JwtAuthenticationCache jwtAuthenticationCache;
 
     public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider,
                                    CustomUserDetailsService customUserDetailsService,
-                                   UserDetailsService userDetailsService) {
+                                   UserDetailsService userDetailsService,
+                                   JwtAuthenticationCache jwtAuthenticationCache) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.customUserDetailsService = customUserDetailsService;
         this.userDetailsService = userDetailsService;
+        this.jwtAuthenticationCache = jwtAuthenticationCache;
 
     }
 
@@ -37,18 +42,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
         //get JWT  Token from http request
         String token = getTokenFromRequest(request);
-        //validate token
-        if(StringUtils.hasText(token) && jwtTokenProvider.validateToken(token)){
-            // get username from token
-            String username = jwtTokenProvider.getUsername(token);
-            // load the user associated with token
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        long authStart = RequestTimings.begin();
+        if(StringUtils.hasText(token)){
+            // a token seen before is served from the cache until it expires
+            UserDetails userDetails = jwtAuthenticationCache.get(token);
+            if(userDetails == null){
+                long keyGeneration = jwtTokenProvider.getKeyGeneration();
+                // validate token and get username from it in a single parse
+                Claims claims = jwtTokenProvider.getClaims(token);
+                // load the user associated with token
+                userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                jwtAuthenticationCache.put(token, userDetails, claims.getExpiration(), keyGeneration);
+            }
             UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                     userDetails,null,userDetails.getAuthorities()
             );
             authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
             SecurityContextHolder.getContext().setAuthentication(authenticationToken);
         }
+        RequestTimings.end(RequestTimings.Phase.AUTH, authStart);
 
         filterChain.doFilter(request,response);
     }
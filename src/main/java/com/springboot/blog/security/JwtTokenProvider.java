@@ -3,14 +3,20 @@ package com.springboot.blog.security;
 import com.springboot.blog.exception.BlogAPIException;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.DecodingException;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.WeakKeyException;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
 
 @Component
 public class JwtTokenProvider {
@@ -19,33 +25,71 @@ public class JwtTokenProvider {
     private String jwtSecret;
     @Value("${app-jwt-expiration-milliseconds}")
     private Long jwtExpirationDate;
+    @Value("${app.jwt-rotation-grace-milliseconds:86400000}")
+    private Long jwtRotationGracePeriod;
+
+    // keys are decoded once and replaced as a whole when the secret is rotated
+    private volatile SigningKeys signingKeys;
+    // tokens issued before key ids were added carry no "kid" header and were signed with the startup key
+    private String legacyKeyId;
+    // the parser is immutable and thread safe, it resolves the key per token from signingKeys
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    public void init(){
+        SigningKey startupKey = new SigningKey(jwtSecret);
+        legacyKeyId = startupKey.id;
+        signingKeys = new SigningKeys(startupKey, null, 0, 0);
+        jwtParser = Jwts.parserBuilder().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                return resolveKey(header.getKeyId()).key;
+            }
+        }).build();
+    }
 
     // get the utility method to generate the JWT token
     public String generateToken(Authentication authentication){
         String username = authentication.getName();
         Date currentDate = new Date();
         Date expireDate = new Date(currentDate.getTime() + jwtExpirationDate);
+        SigningKey signingKey = signingKeys.current;
         // create the token now
         String token = Jwts.builder().setSubject(username)
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.id)
                 .setIssuedAt(new Date())
                 .setExpiration(expireDate)
-                .signWith(key())
+                .signWith(signingKey.key)
                 .compact();
 
         return token;
     }
 
-    private Key key(){
-        // decode the token
-        return Keys.hmacShaKeyFor(
-                Decoders.BASE64.decode(jwtSecret)
-        );
+    // switch signing to a new secret, tokens signed with the old one stay valid for the grace period
+    public void rotateSecret(String newSecret){
+        SigningKey newKey;
+        try{
+            newKey = new SigningKey(newSecret);
+        }catch (DecodingException | WeakKeyException ex){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST,"JWT secret must be a Base64 encoded key of at least 256 bits");
+        }
+        synchronized (this){
+            if(signingKeys.current.id.equals(newKey.id)){
+                return;
+            }
+            signingKeys = new SigningKeys(newKey, signingKeys.current,
+                    System.currentTimeMillis() + jwtRotationGracePeriod, signingKeys.generation + 1);
+        }
+    }
+
+    // changes on every rotation, read it before validating a token to tell whether the keys changed since
+    public long getKeyGeneration(){
+        return signingKeys.generation;
     }
 
     // get username from jwt token
     public String getUsername(String token){
-        Claims claims = Jwts.parserBuilder().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody();
+        Claims claims = getClaims(token);
 
         String username = claims.getSubject();
         return username;
@@ -53,18 +97,85 @@ public class JwtTokenProvider {
 
     // validate JWT Token
     public boolean validateToken(String token){
+        getClaims(token);
+        return true;
+    }
+
+    // validate JWT Token and return its claims with a single signature check
+    public Claims getClaims(String token){
         try{
-            Jwts.parserBuilder().setSigningKey(key()).build().parse(token);
-            return true;
+            Jws<Claims> jws = jwtParser.parseClaimsJws(token);
+            Claims claims = jws.getBody();
+            SigningKeys keys = signingKeys;
+            // a token signed with the retired key is only trusted until the grace period ends
+            if(keys.previous != null && keys.previous.id.equals(keyIdOf(jws.getHeader()))
+                    && (claims.getExpiration() == null || claims.getExpiration().getTime() > keys.previousValidUntil)){
+                claims.setExpiration(new Date(keys.previousValidUntil));
+            }
+            return claims;
         }catch(MalformedJwtException ex){
             throw  new BlogAPIException(HttpStatus.BAD_REQUEST,"Invalid JWT Token");
         }catch (ExpiredJwtException ex){
             throw new BlogAPIException(HttpStatus.BAD_REQUEST,"Expired JWT Token");
         }catch (UnsupportedJwtException ex){
             throw new BlogAPIException(HttpStatus.BAD_REQUEST,"Unsupported JWT Token");
+        }catch (io.jsonwebtoken.security.SecurityException ex){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST,"Invalid JWT signature");
         }catch (IllegalAccessError ex){
             throw  new BlogAPIException(HttpStatus.BAD_REQUEST,"JWT claims string is empty");
         }
 
     }
+
+    private SigningKey resolveKey(String keyId){
+        SigningKeys keys = signingKeys;
+        String id = keyId != null ? keyId : legacyKeyId;
+        if(keys.current.id.equals(id)){
+            return keys.current;
+        }
+        if(keys.previous != null && keys.previous.id.equals(id)
+                && System.currentTimeMillis() < keys.previousValidUntil){
+            return keys.previous;
+        }
+        throw new io.jsonwebtoken.security.SignatureException("JWT signed with an unknown or retired key");
+    }
+
+    private String keyIdOf(JwsHeader header){
+        return header.getKeyId() != null ? header.getKeyId() : legacyKeyId;
+    }
+
+    private static class SigningKey {
+        private final String id;
+        private final Key key;
+
+        private SigningKey(String secret) {
+            byte[] keyBytes = Decoders.BASE64.decode(secret);
+            this.key = Keys.hmacShaKeyFor(keyBytes);
+            this.id = fingerprint(keyBytes);
+        }
+
+        // short, non reversible identifier of the key, sent as the "kid" header
+        private static String fingerprint(byte[] keyBytes){
+            try{
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(keyBytes);
+                return HexFormat.of().formatHex(hash, 0, 8);
+            }catch (NoSuchAlgorithmException ex){
+                throw new IllegalStateException("SHA-256 is not available", ex);
+            }
+        }
+    }
+
+    private static class SigningKeys {
+        private final SigningKey current;
+        private final SigningKey previous;
+        private final long previousValidUntil;
+        private final long generation;
+
+        private SigningKeys(SigningKey current, SigningKey previous, long previousValidUntil, long generation) {
+            this.current = current;
+            this.previous = previous;
+            this.previousValidUntil = previousValidUntil;
+            this.generation = generation;
+        }
+    }
 }
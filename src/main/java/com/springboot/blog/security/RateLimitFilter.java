@@ -0,0 +1,64 @@
+package com.springboot.blog.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Runs right after JwtAuthenticationFilter, so a valid token is limited by its subject wherever the client
+// connects from, and everything else by the client address. Login and register are always limited by
+// address with their own, much lower, limit. Behind a proxy set server.forward-headers-strategy so the
+// address is the client's and not the proxy's.
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String AUTH_PATH = "/api/v1/auth/";
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if(rateLimiter.isEnabled()){
+            long wait = acquire(request);
+            if(wait > 0){
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(toSecondsRoundedUp(wait)));
+                // written here, sendError would forward to /error and that is not public
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.getWriter().write("{\"message\":\"Too many requests, retry later\"}");
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private long acquire(HttpServletRequest request){
+        if(request.getRequestURI().startsWith(request.getContextPath() + AUTH_PATH)){
+            return rateLimiter.tryAcquire(RateLimiter.Route.AUTH, request.getRemoteAddr());
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if(authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)){
+            return rateLimiter.tryAcquire(RateLimiter.Route.AUTHENTICATED, authentication.getName());
+        }
+        return rateLimiter.tryAcquire(RateLimiter.Route.ANONYMOUS, request.getRemoteAddr());
+    }
+
+    private static long toSecondsRoundedUp(long nanos){
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,118 @@
+package com.springboot.blog.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per client token buckets kept as GCRA: a bucket is a single AtomicLong holding the theoretical arrival
+// time of the next request, so a check is one map lookup and one compare-and-set, with no lock and no
+// refill bookkeeping. A bucket whose arrival time has passed is full, so dropping it loses nothing; the
+// map is swept of those on a timer. It holds at most maximum-clients buckets per route, once full the new
+// clients share one overflow bucket until the next sweep makes room.
+@Component
+public class RateLimiter {
+
+    public enum Route { AUTH, ANONYMOUS, AUTHENTICATED }
+
+    private final boolean enabled;
+    private final Limit[] limits = new Limit[Route.values().length];
+
+    public RateLimiter(@Value("${app.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${app.rate-limit.auth.requests-per-second:2}") double authRate,
+                       @Value("${app.rate-limit.auth.burst:5}") int authBurst,
+                       @Value("${app.rate-limit.anonymous.requests-per-second:20}") double anonymousRate,
+                       @Value("${app.rate-limit.anonymous.burst:50}") int anonymousBurst,
+                       @Value("${app.rate-limit.authenticated.requests-per-second:50}") double authenticatedRate,
+                       @Value("${app.rate-limit.authenticated.burst:100}") int authenticatedBurst,
+                       @Value("${app.rate-limit.maximum-clients:100000}") long maximumClients,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        limits[Route.AUTH.ordinal()] = new Limit(Route.AUTH, authRate, authBurst, maximumClients, meterRegistry);
+        limits[Route.ANONYMOUS.ordinal()] = new Limit(Route.ANONYMOUS, anonymousRate, anonymousBurst,
+                maximumClients, meterRegistry);
+        limits[Route.AUTHENTICATED.ordinal()] = new Limit(Route.AUTHENTICATED, authenticatedRate, authenticatedBurst,
+                maximumClients, meterRegistry);
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    // 0 when the request may go ahead, otherwise the nanoseconds until the client gets a token back
+    public long tryAcquire(Route route, String client){
+        return limits[route.ordinal()].tryAcquire(client, System.nanoTime());
+    }
+
+    @Scheduled(fixedDelayString = "${app.rate-limit.sweep-interval-milliseconds:1000}")
+    public void sweep(){
+        long now = System.nanoTime();
+        for(Limit limit : limits){
+            limit.sweep(now);
+        }
+    }
+
+    private static class Limit {
+        // time between two tokens and time to refill the whole burst
+        private final long interval;
+        private final long burstWindow;
+        private final long maximumClients;
+        private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong overflow;
+        private final Counter rejected;
+        private final Counter overflowed;
+
+        private Limit(Route route, double requestsPerSecond, int burst, long maximumClients, MeterRegistry meterRegistry) {
+            this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+            this.burstWindow = interval * burst;
+            this.maximumClients = maximumClients;
+            this.overflow = new AtomicLong(System.nanoTime());
+            String name = route.name().toLowerCase();
+            this.rejected = Counter.builder("rate.limit.rejected").tag("route", name).register(meterRegistry);
+            this.overflowed = Counter.builder("rate.limit.overflowed").tag("route", name).register(meterRegistry);
+            Gauge.builder("rate.limit.clients", buckets, Map::size).tag("route", name).register(meterRegistry);
+        }
+
+        private long tryAcquire(String client, long now){
+            AtomicLong bucket = buckets.get(client);
+            if(bucket == null){
+                bucket = newBucket(client, now);
+            }
+            while(true){
+                long arrival = bucket.get();
+                long next = Math.max(arrival, now) + interval;
+                long excess = next - now - burstWindow;
+                if(excess > 0){
+                    rejected.increment();
+                    return excess;
+                }
+                if(bucket.compareAndSet(arrival, next)){
+                    return 0;
+                }
+            }
+        }
+
+        private AtomicLong newBucket(String client, long now){
+            // a full map is not swept here, one flood of new clients would otherwise scan it on every request
+            if(buckets.size() >= maximumClients){
+                overflowed.increment();
+                return overflow;
+            }
+            // a new bucket starts full, its next arrival time is now
+            return buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+        }
+
+        // drops the full buckets, a client coming back gets an identical new one. A request racing with the
+        // removal is counted on the dropped bucket and lost, which only ever lets one extra request through.
+        private void sweep(long now){
+            buckets.values().removeIf(bucket -> bucket.get() <= now);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.springboot.blog.security;
+
+import com.springboot.blog.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Drops the cached tokens of a user whose account is updated or deleted, once the change is committed so
+// a concurrent request cannot cache the old roles again. Changes made outside JPA, or only to the roles
+// collection, are picked up when the cached entries reach app.jwt-cache-maximum-age-milliseconds.
+// Hibernate also creates the listener in JPA test slices, where there is no cache to invalidate.
+@Component
+public class UserChangeListener {
+
+    private ObjectProvider<JwtAuthenticationCache> jwtAuthenticationCache;
+
+    public UserChangeListener(ObjectProvider<JwtAuthenticationCache> jwtAuthenticationCache) {
+        this.jwtAuthenticationCache = jwtAuthenticationCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void userChanged(User user){
+        // cached UserDetails are keyed by email, see CustomUserDetailsService
+        String username = user.getEmail();
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    jwtAuthenticationCache.ifAvailable(cache -> cache.invalidateUser(username));
+                }
+            });
+        }else {
+            jwtAuthenticationCache.ifAvailable(cache -> cache.invalidateUser(username));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.springboot.blog.service;
 
+import com.springboot.blog.payload.JwtKeyRotationDto;
 import com.springboot.blog.payload.LoginDto;
 import com.springboot.blog.payload.RegisterDto;
 
@@ -8,4 +9,6 @@ public interface AuthService {
 
     String register(RegisterDto registerDto);
 
+    String rotateSigningKey(JwtKeyRotationDto jwtKeyRotationDto);
+
 }
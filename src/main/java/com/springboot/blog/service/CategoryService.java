@@ -1,13 +1,32 @@
 package com.springboot.blog.service;
 
 import com.springboot.blog.payload.CategoryDto;
+import com.springboot.blog.payload.JobDto;
+import com.springboot.blog.payload.ResourceVersion;
+
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 public interface CategoryService {
     CategoryDto addCategory(CategoryDto categoryDto);
-    CategoryDto getCategory(Long categoryId);
-    List<CategoryDto> getAllCategories();
+    // the cached category when it is at versionTag (at any version when null), loaded from the database otherwise
+    CategoryDto getCategory(Long categoryId, String versionTag);
+    // the cached list when it is at versionTag, see getCategoriesVersion
+    List<CategoryDto> getAllCategories(String versionTag);
+
+    Map<String, Object> getCategoryFields(Long categoryId, Set<String> fields);
+
+    List<Map<String, Object>> getAllCategoryFields(Set<String> fields);
+
+    Optional<ResourceVersion> getCategoryVersion(Long categoryId);
+
+    ResourceVersion getCategoriesVersion();
     CategoryDto updateCategory(CategoryDto categoryDto, Long categoryId);
 
     void deleteCategory(Long categoryId);
+
+    // deletes the category, its posts and their comments on a background thread
+    JobDto deleteCategoryInBackground(Long categoryId);
 }
@@ -1,17 +1,45 @@
 package com.springboot.blog.service;
 
+import com.springboot.blog.payload.BulkResponse;
+import com.springboot.blog.payload.CommentCursorResponse;
 import com.springboot.blog.payload.CommentDto;
+import com.springboot.blog.payload.ResourceVersion;
+import com.springboot.blog.writebehind.PendingComment;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CommentService {
 
     CommentDto createComment(long postId, CommentDto commentDto);
     List<CommentDto> getCommentsByPostId(long postId);
 
+    List<Map<String, Object>> getCommentFieldsByPostId(long postId, Set<String> fields);
+
+    CommentCursorResponse getCommentsByPostIdByCursor(long postId, String cursor, int pageSize);
+
+    void streamCommentsByPostId(long postId, Consumer<CommentDto> consumer);
+
     CommentDto getCommentById(Long postId, Long commentId);
 
+    Map<String, Object> getCommentFieldsById(Long postId, Long commentId, Set<String> fields);
+
+    // comment writes bump the version of their post, so it versions the comment listing as well
+    Optional<ResourceVersion> getCommentsVersion(long postId);
+
+    Optional<ResourceVersion> getCommentVersion(Long postId, Long commentId);
+
     CommentDto updateComment(Long postId, long commentId, CommentDto commentDto);
 
     void deleteComment(Long postId,Long commentId);
+
+    BulkResponse createComments(long postId, List<CommentDto> commentDtos);
+
+    BulkResponse deleteComments(Long postId, List<Long> commentIds);
+
+    // writes comments accepted by the write-behind queue, those already written or of deleted posts are skipped
+    int createPendingComments(List<PendingComment> pendingComments);
 }
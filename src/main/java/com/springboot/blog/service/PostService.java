@@ -1,9 +1,20 @@
 package com.springboot.blog.service;
 
+import com.springboot.blog.payload.BulkResponse;
+import com.springboot.blog.payload.FieldsPageResponse;
+import com.springboot.blog.payload.PostCursorResponse;
+import com.springboot.blog.payload.JobDto;
 import com.springboot.blog.payload.PostDto;
 import com.springboot.blog.payload.PostResponse;
+import com.springboot.blog.payload.PostSearchResult;
+import com.springboot.blog.payload.PostSummaryDto;
+import com.springboot.blog.payload.PostSummaryResponse;
+import com.springboot.blog.payload.ResourceVersion;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 public interface PostService {
 
@@ -11,11 +22,41 @@ public interface PostService {
 
     PostResponse getAllPost(int pageNo, int pageSize,String sortBy,String sortDir);
 
-    PostDto getPostById(long id);
+    PostSummaryResponse getAllPostSummaries(int pageNo, int pageSize, String sortBy, String sortDir);
+
+    FieldsPageResponse getAllPostFields(int pageNo, int pageSize, String sortBy, String sortDir, Set<String> fields);
+
+    PostCursorResponse getAllPostByCursor(String cursor, int pageSize, String sortBy, String sortDir, boolean includeTotal);
+
+    // the cached post when it is at versionTag (at any version when null), loaded from the database otherwise
+    PostDto getPostById(long id, String versionTag);
+
+    Map<String, Object> getPostFieldsById(long id, Set<String> fields);
+
+    Optional<ResourceVersion> getPostVersion(long id);
 
     PostDto updatePost(PostDto postDto,long id);
 
     void deletePostById(long id);
 
+    // deletes the post and its comments on a background thread, the job reports the progress
+    JobDto deletePostByIdInBackground(long id);
+
     List<PostDto> getPostByCategory(Long categoryId);
+
+    List<PostSummaryDto> getPostSummariesByCategory(Long categoryId);
+
+    List<Map<String, Object>> getPostFieldsByCategory(Long categoryId, Set<String> fields);
+
+    List<PostSearchResult> searchPosts(String query, Long categoryId, int limit);
+
+    List<PostSummaryDto> getPopularPosts(String by, int limit);
+
+    List<PostSummaryDto> getTrendingPosts(Long categoryId, int limit);
+
+    BulkResponse createPosts(List<PostDto> postDtos);
+
+    BulkResponse updatePosts(List<PostDto> postDtos);
+
+    BulkResponse deletePosts(List<Long> ids);
 }
@@ -3,10 +3,12 @@ package com.springboot.blog.service.impl;
 import com.springboot.blog.entity.Role;
 import com.springboot.blog.entity.User;
 import com.springboot.blog.exception.BlogAPIException;
+import com.springboot.blog.payload.JwtKeyRotationDto;
 import com.springboot.blog.payload.LoginDto;
 import com.springboot.blog.payload.RegisterDto;
 import com.springboot.blog.repository.RoleRepository;
 import com.springboot.blog.repository.UserRepository;
+import com.springboot.blog.security.JwtAuthenticationCache;
 import com.springboot.blog.security.JwtTokenProvider;
 import com.springboot.blog.service.AuthService;
 import lombok.Setter;
@@ -17,6 +19,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -29,17 +32,20 @@ public class AuthServiceImpl implements AuthService {
     private PasswordEncoder passwordEncoder;
 
     private JwtTokenProvider jwtTokenProvider;
+    private JwtAuthenticationCache jwtAuthenticationCache;
 
     public AuthServiceImpl(AuthenticationManager authenticationManager,
                            UserRepository userRepository,
                            RoleRepository roleRepository,
                            PasswordEncoder passwordEncoder,
-                           JwtTokenProvider jwtTokenProvider) {
+                           JwtTokenProvider jwtTokenProvider,
+                           JwtAuthenticationCache jwtAuthenticationCache) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.jwtAuthenticationCache = jwtAuthenticationCache;
     }
 
     @Override
@@ -75,4 +81,15 @@ public class AuthServiceImpl implements AuthService {
         userRepository.save(user);
         return "User registered successfully";
     }
+
+    @Override
+    public String rotateSigningKey(JwtKeyRotationDto jwtKeyRotationDto) {
+        if(!StringUtils.hasText(jwtKeyRotationDto.getSecret())){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST,"JWT secret should not be empty");
+        }
+        jwtTokenProvider.rotateSecret(jwtKeyRotationDto.getSecret());
+        // entries validated under the old keys are misses from now on, this only frees them
+        jwtAuthenticationCache.invalidateAll();
+        return "JWT signing key rotated successfully";
+    }
 }
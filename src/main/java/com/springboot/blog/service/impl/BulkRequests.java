@@ -0,0 +1,36 @@
+package com.springboot.blog.service.impl;
+
+import com.springboot.blog.exception.BlogAPIException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// checks shared by the bulk operations of the services
+class BulkRequests {
+
+    static void checkSize(List<?> items, int maxItems){
+        if(items == null || items.isEmpty()){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Bulk request should contain at least one item");
+        }
+        if(items.size() > maxItems){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Bulk request should contain at most " + maxItems + " items");
+        }
+    }
+
+    // bean validation of one item, the items are validated one by one so a bad item does not fail the request
+    static String violations(Validator validator, Object item){
+        if(item == null){
+            return "Item should not be null";
+        }
+        Set<ConstraintViolation<Object>> violations = validator.validate(item);
+        if(violations.isEmpty()){
+            return null;
+        }
+        return violations.stream().map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted().collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,117 @@
+package com.springboot.blog.service.impl;
+
+import com.springboot.blog.cache.CompressedPostBodyCache;
+import com.springboot.blog.config.CacheConfig;
+import com.springboot.blog.repository.CategoryRepository;
+import com.springboot.blog.repository.CommentRepository;
+import com.springboot.blog.repository.PostRepository;
+import com.springboot.blog.search.PostSearchIndex;
+import com.springboot.blog.statistics.PostTrending;
+import com.springboot.blog.utils.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+// Deletes posts and categories with their children through bulk deletes of at most chunk-size ids,
+// each chunk in its own short transaction, instead of loading every child for the JPA cascade in one
+// long transaction. Only a chunk of ids is held at a time. The parent row is deleted last together
+// with whatever was added meanwhile, so a failed delete leaves a consistent tree and can be run again.
+@Component
+class CascadeDelete {
+
+    private PostRepository postRepository;
+    private CommentRepository commentRepository;
+    private CategoryRepository categoryRepository;
+    private TransactionTemplate transactionTemplate;
+    private Cache postCache;
+    private CompressedPostBodyCache compressedPostBodyCache;
+    private PostSearchIndex postSearchIndex;
+    private PostTrending postTrending;
+    private Pageable chunk;
+
+    CascadeDelete(PostRepository postRepository, CommentRepository commentRepository,
+                  CategoryRepository categoryRepository, TransactionTemplate transactionTemplate,
+                  CacheManager cacheManager, CompressedPostBodyCache compressedPostBodyCache,
+                  PostSearchIndex postSearchIndex, PostTrending postTrending,
+                  @Value("${app.delete.chunk-size:500}") int chunkSize) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.categoryRepository = categoryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.postCache = cacheManager.getCache(CacheConfig.POSTS_CACHE);
+        this.compressedPostBodyCache = compressedPostBodyCache;
+        this.postSearchIndex = postSearchIndex;
+        this.postTrending = postTrending;
+        this.chunk = PageRequest.of(0, chunkSize);
+    }
+
+    // the number of deleted rows is reported to onRowsDeleted as the chunks commit
+    void deletePost(long postId, LongConsumer onRowsDeleted){
+        deleteInChunks(() -> commentRepository.findIdsByPostId(postId, chunk), commentRepository::deleteAllByIdInBatch,
+                onRowsDeleted);
+        transactionTemplate.executeWithoutResult(status -> {
+            onRowsDeleted.accept(commentRepository.deleteByPostIdIn(List.of(postId)));
+            postRepository.deleteAllByIdInBatch(List.of(postId));
+            onRowsDeleted.accept(1);
+            postsDeleted(List.of(postId));
+        });
+    }
+
+    void deleteCategory(long categoryId, LongConsumer onRowsDeleted){
+        deleteInChunks(() -> commentRepository.findIdsByPostCategoryId(categoryId, chunk),
+                commentRepository::deleteAllByIdInBatch, onRowsDeleted);
+        deleteInChunks(() -> postRepository.findIdsByCategoryId(categoryId, chunk), postIds -> {
+            // comments added since the first pass
+            onRowsDeleted.accept(commentRepository.deleteByPostIdIn(postIds));
+            postRepository.deleteAllByIdInBatch(postIds);
+            postsDeleted(postIds);
+        }, onRowsDeleted);
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> postIds = postRepository.findIdsByCategoryId(categoryId, Pageable.unpaged());
+            if(!postIds.isEmpty()){
+                onRowsDeleted.accept(commentRepository.deleteByPostIdIn(postIds));
+                postRepository.deleteAllByIdInBatch(postIds);
+                onRowsDeleted.accept(postIds.size());
+                postsDeleted(postIds);
+            }
+            categoryRepository.deleteAllByIdInBatch(List.of(categoryId));
+            onRowsDeleted.accept(1);
+        });
+    }
+
+    // search and trending drop the posts after commit, the caches too
+    void postsDeleted(Collection<Long> postIds){
+        AfterCommit.run(() -> {
+            postIds.forEach(postCache::evict);
+            postIds.forEach(compressedPostBodyCache::evict);
+        });
+        postIds.forEach(postSearchIndex::remove);
+        postIds.forEach(postTrending::remove);
+    }
+
+    private void deleteInChunks(Supplier<List<Long>> query, Consumer<List<Long>> delete, LongConsumer onRowsDeleted){
+        while(true){
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> ids = query.get();
+                if(!ids.isEmpty()){
+                    delete.accept(ids);
+                }
+                return ids.size();
+            });
+            if(deleted == null || deleted == 0){
+                return;
+            }
+            onRowsDeleted.accept(deleted);
+        }
+    }
+}
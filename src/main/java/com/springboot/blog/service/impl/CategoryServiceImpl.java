@@ -1,51 +1,144 @@
 package com.springboot.blog.service.impl;
 
+import com.springboot.blog.cache.SingleFlight;
+import com.springboot.blog.config.CacheConfig;
 import com.springboot.blog.entity.Category;
 import com.springboot.blog.exception.ResourceNotFoundException;
+import com.springboot.blog.jobs.JobRegistry;
+import com.springboot.blog.mapper.CategoryMapper;
 import com.springboot.blog.payload.CategoryDto;
+import com.springboot.blog.payload.JobDto;
+import com.springboot.blog.payload.ResourceVersion;
 import com.springboot.blog.repository.CategoryRepository;
+import com.springboot.blog.repository.FieldProjection;
+import com.springboot.blog.repository.FieldProjectionRepository;
+import com.springboot.blog.search.PostSearchIndex;
+import com.springboot.blog.statistics.PostTrending;
 import com.springboot.blog.service.CategoryService;
-import org.modelmapper.ModelMapper;
+import com.springboot.blog.utils.AfterCommit;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 @Service
 public class CategoryServiceImpl implements CategoryService {
 
     private CategoryRepository categoryRepository;
-    private ModelMapper modelMapper;
+    private CategoryMapper categoryMapper;
+    private Cache categoryCache;
+    private Cache categoryListCache;
+    private PostSearchIndex postSearchIndex;
+    private PostTrending postTrending;
+    private CascadeDelete cascadeDelete;
+    private JobRegistry jobRegistry;
+    private FieldProjectionRepository fieldProjectionRepository;
+    private SingleFlight.Group<Long, CategoryDto> categoryLoads;
+    private TransactionTemplate readOnlyTransaction;
 
-    public CategoryServiceImpl(CategoryRepository categoryRepository, ModelMapper modelMapper) {
+    public CategoryServiceImpl(CategoryRepository categoryRepository, CategoryMapper categoryMapper,
+                               CacheManager cacheManager, PostSearchIndex postSearchIndex, PostTrending postTrending,
+                               CascadeDelete cascadeDelete, JobRegistry jobRegistry,
+                               FieldProjectionRepository fieldProjectionRepository, SingleFlight singleFlight,
+                               PlatformTransactionManager transactionManager) {
         this.categoryRepository = categoryRepository;
-        this.modelMapper = modelMapper;
+        this.fieldProjectionRepository = fieldProjectionRepository;
+        this.categoryMapper = categoryMapper;
+        this.postSearchIndex = postSearchIndex;
+        this.postTrending = postTrending;
+        this.cascadeDelete = cascadeDelete;
+        this.jobRegistry = jobRegistry;
+        this.categoryCache = cacheManager.getCache(CacheConfig.CATEGORIES_CACHE);
+        this.categoryListCache = cacheManager.getCache(CacheConfig.CATEGORY_LIST_CACHE);
+        this.categoryLoads = singleFlight.group("categories");
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     @Override
     public CategoryDto addCategory(CategoryDto categoryDto) {
 
-        Category category = modelMapper.map(categoryDto,Category.class);
+        Category category = categoryMapper.mapToEntity(categoryDto);
         Category savedCategory = categoryRepository.save(category);
-        return modelMapper.map(savedCategory,CategoryDto.class);
+        categoryCache.evict(savedCategory.getId());
+        categoryListCache.clear();
+        return categoryMapper.mapToDto(savedCategory);
     }
 
     @Override
-    public CategoryDto getCategory(Long categoryId) {
-        Category category = categoryRepository.findById(categoryId).orElseThrow(() ->
-                new ResourceNotFoundException("Category","id",categoryId));
-        return modelMapper.map(category,CategoryDto.class);
+    public CategoryDto getCategory(Long categoryId, String versionTag) {
+        // an entry at another version was cached from a replica that lagged behind, it is reloaded instead of served
+        CategoryDto cachedCategory = categoryCache.get(categoryId, CategoryDto.class);
+        if(cachedCategory != null && (versionTag == null || versionTag.equals(cachedCategory.getVersionTag()))){
+            return cachedCategory;
+        }
+        // concurrent misses of the same category share one load
+        return categoryLoads.load(categoryId, () -> readOnlyTransaction.execute(status -> {
+            Category category = categoryRepository.findById(categoryId).orElseThrow(() ->
+                    new ResourceNotFoundException("Category","id",categoryId));
+            CategoryDto categoryDto = categoryMapper.mapToDto(category);
+            categoryCache.put(categoryId, categoryDto);
+            return categoryDto;
+        }));
     }
 
     @Override
-    public List<CategoryDto> getAllCategories() {
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public List<CategoryDto> getAllCategories(String versionTag) {
+        List<CategoryDto> cachedCategories = categoryListCache.get(versionTag, List.class);
+        if(cachedCategories != null){
+            return cachedCategories;
+        }
         List<Category> categories = categoryRepository.findAll();
 
-        return categories.stream().map((category) -> modelMapper.map(category,CategoryDto.class)).collect(Collectors.toList());
+        List<CategoryDto> categoryDtos = categories.stream().map((category) -> categoryMapper.mapToDto(category)).collect(Collectors.toList());
+        // cached under the version of the rows read, which is not versionTag when a write committed in between
+        categoryListCache.put(listVersionTagOf(categories), categoryDtos);
+        return categoryDtos;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getCategoryFields(Long categoryId, Set<String> fields) {
+        List<Map<String, Object>> categories = fieldProjectionRepository.findAll(FieldProjection.CATEGORY, fields,
+                (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("id"), categoryId), Sort.unsorted());
+        if(categories.isEmpty()){
+            throw new ResourceNotFoundException("Category","id",categoryId);
+        }
+        return categories.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getAllCategoryFields(Set<String> fields) {
+        return fieldProjectionRepository.findAll(FieldProjection.CATEGORY, fields, null, Sort.by("id"));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ResourceVersion> getCategoryVersion(Long categoryId) {
+        return categoryRepository.findVersionById(categoryId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion getCategoriesVersion() {
+        return categoryRepository.findListVersion();
     }
 
     @Override
+    @Transactional
     public CategoryDto updateCategory(CategoryDto categoryDto, Long categoryId) {
         Category category = categoryRepository.findById(categoryId).orElseThrow(() ->
                 new ResourceNotFoundException("Category","id",categoryId));
@@ -53,13 +146,46 @@ public class CategoryServiceImpl implements CategoryService {
         category.setDescription(categoryDto.getDescription());
         category.setId(categoryId);
         Category updatedCategory = categoryRepository.save(category);
-        return modelMapper.map(updatedCategory,CategoryDto.class);
+        AfterCommit.run(() -> {
+            categoryCache.evict(categoryId);
+            categoryListCache.clear();
+        });
+        return categoryMapper.mapToDto(updatedCategory);
     }
 
     @Override
     public void deleteCategory(Long categoryId) {
-        Category category = categoryRepository.findById(categoryId).orElseThrow(()->
-                new ResourceNotFoundException("Category","id",categoryId));
-        categoryRepository.delete(category);
+        if(!categoryRepository.existsById(categoryId)){
+            throw new ResourceNotFoundException("Category","id",categoryId);
+        }
+        deleteCategory(categoryId, rows -> {});
+    }
+
+    @Override
+    public JobDto deleteCategoryInBackground(Long categoryId) {
+        if(!categoryRepository.existsById(categoryId)){
+            throw new ResourceNotFoundException("Category","id",categoryId);
+        }
+        return jobRegistry.submit("delete-category", rows -> deleteCategory(categoryId, rows));
+    }
+
+    private void deleteCategory(Long categoryId, LongConsumer onRowsDeleted){
+        cascadeDelete.deleteCategory(categoryId, onRowsDeleted);
+        categoryCache.evict(categoryId);
+        categoryListCache.clear();
+        // posts indexed while the delete ran are dropped with the category
+        postSearchIndex.removeCategory(categoryId);
+        postTrending.removeCategory(categoryId);
+    }
+
+    // the tag CategoryRepository.findListVersion computes in the database
+    private static String listVersionTagOf(List<Category> categories){
+        long versionSum = 0;
+        long maxId = 0;
+        for(Category category : categories){
+            versionSum += category.getVersion();
+            maxId = Math.max(maxId, category.getId());
+        }
+        return new ResourceVersion((long) categories.size(), versionSum, maxId, null).getTag();
     }
 }
@@ -1,44 +1,105 @@
 package com.springboot.blog.service.impl;
 
+import com.springboot.blog.cache.CompressedPostBodyCache;
+import com.springboot.blog.config.CacheConfig;
+import com.springboot.blog.diagnostics.RequestTimings;
 import com.springboot.blog.entity.Comment;
 import com.springboot.blog.entity.Post;
 import com.springboot.blog.exception.BlogAPIException;
 import com.springboot.blog.exception.ResourceNotFoundException;
+import com.springboot.blog.mapper.CommentMapper;
+import com.springboot.blog.payload.BulkItemResult;
+import com.springboot.blog.payload.BulkResponse;
+import com.springboot.blog.payload.CommentCursorResponse;
 import com.springboot.blog.payload.CommentDto;
 import com.springboot.blog.payload.PostDto;
+import com.springboot.blog.payload.ResourceVersion;
 import com.springboot.blog.repository.CommentRepository;
+import com.springboot.blog.repository.FieldProjection;
+import com.springboot.blog.repository.FieldProjectionRepository;
 import com.springboot.blog.repository.PostRepository;
 import com.springboot.blog.service.CommentService;
-import org.modelmapper.ModelMapper;
+import com.springboot.blog.statistics.PostStatistics;
+import com.springboot.blog.utils.AfterCommit;
+import com.springboot.blog.utils.AppConstants;
+import com.springboot.blog.utils.PageCursor;
+import com.springboot.blog.writebehind.PendingComment;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class CommentServiceImpl implements CommentService {
+    // comments read per transaction while streaming
+    private static final int STREAM_CHUNK_SIZE = 500;
+
     private CommentRepository commentRepository;
     private PostRepository postRepository;
-    private ModelMapper mapper;
+    private CommentMapper mapper;
+    private Validator validator;
+    private FieldProjectionRepository fieldProjectionRepository;
+    private PostStatistics postStatistics;
+    // cached posts embed their comments
+    private Cache postCache;
+    private CompressedPostBodyCache compressedPostBodyCache;
+    private TransactionTemplate readOnlyTransaction;
+    @Value("${app.bulk-max-items:5000}")
+    private int bulkMaxItems;
 
-    public CommentServiceImpl(CommentRepository commentRepository,PostRepository postRepository,ModelMapper mapper) {
+    public CommentServiceImpl(CommentRepository commentRepository,PostRepository postRepository,CommentMapper mapper,
+                              Validator validator, FieldProjectionRepository fieldProjectionRepository,
+                              PostStatistics postStatistics, CacheManager cacheManager,
+                              CompressedPostBodyCache compressedPostBodyCache,
+                              PlatformTransactionManager transactionManager) {
         this.commentRepository = commentRepository;
         this.postRepository =  postRepository;
         this.mapper = mapper;
+        this.validator = validator;
+        this.fieldProjectionRepository = fieldProjectionRepository;
+        this.postStatistics = postStatistics;
+        this.postCache = cacheManager.getCache(CacheConfig.POSTS_CACHE);
+        this.compressedPostBodyCache = compressedPostBodyCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     @Override
+    @Transactional
     public CommentDto createComment(long postId, CommentDto commentDto) {
         Comment comment = maptoEntity(commentDto);
         Post post = postRepository.findById(postId).orElseThrow(()-> new ResourceNotFoundException("Post","id",postId));
         comment.setPost(post);
         Comment newComment = commentRepository.save(comment);
+        evictPost(postId);
+        postStatistics.recordComments(postId, 1);
         return mapToDto(newComment);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<CommentDto> getCommentsByPostId(long postId) {
         List<Comment> comments = commentRepository.findByPostId(postId);
 //        List<CommentDto> commentDtos = new ArrayList<>();
@@ -51,42 +112,254 @@ public class CommentServiceImpl implements CommentService {
     }
 
     @Override
-    public CommentDto getCommentById(Long postId, Long commentId) {
-        Post post = postRepository.findById(postId).orElseThrow(()-> new ResourceNotFoundException("Post","id",postId));
-        Comment comment = commentRepository.findById(commentId).orElseThrow(()-> new ResourceNotFoundException("Comment","id",commentId));
-        if(!comment.getPost().getId().equals(post.getId())){
-            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Comment does not belong to post");
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getCommentFieldsByPostId(long postId, Set<String> fields) {
+        return fieldProjectionRepository.findAll(FieldProjection.COMMENT, fields,
+                (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("post").get("id"), postId),
+                Sort.by("id"));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CommentCursorResponse getCommentsByPostIdByCursor(long postId, String cursor, int pageSize) {
+        if(pageSize < 1 || pageSize > AppConstants.MAX_CURSOR_PAGE_SIZE){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Page size should be between 1 and " + AppConstants.MAX_CURSOR_PAGE_SIZE);
         }
+        // fetch one extra row to know if there is a next page without counting
+        Pageable pageable = PageRequest.of(0, pageSize + 1, Sort.by("id"));
+        List<Comment> comments;
+        if(!StringUtils.hasText(cursor)){
+            comments = commentRepository.findByPostId(postId, pageable);
+        }else{
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            if(!pageCursor.matches("id", Sort.Direction.ASC.name())){
+                throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Invalid page cursor");
+            }
+            comments = commentRepository.findByPostIdAndIdGreaterThan(postId, pageCursor.getId(), pageable);
+        }
+
+        boolean last = comments.size() <= pageSize;
+        List<Comment> page = last ? comments : comments.subList(0, pageSize);
+        String nextCursor = null;
+        if(!last){
+            long lastId = page.get(page.size() - 1).getId();
+            nextCursor = new PageCursor("id", Sort.Direction.ASC.name(), lastId, String.valueOf(lastId)).encode();
+        }
+        List<CommentDto> content = page.stream().map(comment -> mapToDto(comment)).collect(Collectors.toList());
+        return new CommentCursorResponse(content, pageSize, nextCursor, last);
+    }
+
+    // Keyset pages of comments, each read in a short transaction of its own and handed to the consumer after
+    // it ends. The stream is left out of open session in view (OpenEntityManagerInViewConfig), so every chunk
+    // gets an EntityManager that is closed with its transaction: the connection goes back to the pool and the
+    // chunk's entities are dropped while a slow reader receives them.
+    @Override
+    public void streamCommentsByPostId(long postId, Consumer<CommentDto> consumer) {
+        if(!postRepository.existsById(postId)){
+            throw new ResourceNotFoundException("Post","id",postId);
+        }
+        Pageable chunk = PageRequest.of(0, STREAM_CHUNK_SIZE, Sort.by("id"));
+        Long lastId = null;
+        while(true){
+            Long afterId = lastId;
+            List<CommentDto> comments = readOnlyTransaction.execute(status -> {
+                List<Comment> page = afterId == null ? commentRepository.findByPostId(postId, chunk)
+                        : commentRepository.findByPostIdAndIdGreaterThan(postId, afterId, chunk);
+                return page.stream().map(comment -> mapToDto(comment)).collect(Collectors.toList());
+            });
+            comments.forEach(consumer);
+            if(comments.size() < STREAM_CHUNK_SIZE){
+                return;
+            }
+            lastId = comments.get(comments.size() - 1).getId();
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CommentDto getCommentById(Long postId, Long commentId) {
+        Comment comment = commentRepository.findByIdAndPostId(commentId, postId)
+                .orElseThrow(()-> commentNotFound(postId, commentId));
         return mapToDto(comment);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getCommentFieldsById(Long postId, Long commentId, Set<String> fields) {
+        // ownership is part of the query
+        List<Map<String, Object>> comments = fieldProjectionRepository.findAll(FieldProjection.COMMENT, fields,
+                (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                        criteriaBuilder.equal(root.get("id"), commentId),
+                        criteriaBuilder.equal(root.get("post").get("id"), postId)), Sort.unsorted());
+        if(comments.isEmpty()){
+            throw commentNotFound(postId, commentId);
+        }
+        return comments.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ResourceVersion> getCommentsVersion(long postId) {
+        return postRepository.findVersionById(postId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ResourceVersion> getCommentVersion(Long postId, Long commentId) {
+        return commentRepository.findVersionByIdAndPostId(commentId, postId);
+    }
+
+    @Override
+    @Transactional
     public CommentDto updateComment(Long postId, long commentId, CommentDto commentRequest) {
-        Post post = postRepository.findById(postId).orElseThrow(()-> new ResourceNotFoundException("Post","id",postId));
-        Comment comment = commentRepository.findById(commentId).orElseThrow(()-> new ResourceNotFoundException("Comment","id",commentId));
-        if(!comment.getPost().getId().equals(post.getId())){
-            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Comment does not belong to post");
+        Instant now = Instant.now();
+        if(commentRepository.updateByIdAndPostId(commentId, postId, commentRequest.getName(),
+                commentRequest.getEmail(), commentRequest.getBody(), now) == 0){
+            throw commentNotFound(postId, commentId);
         }
-        comment.setName(commentRequest.getName());
-        comment.setBody(commentRequest.getBody());
-        comment.setEmail(commentRequest.getEmail());
+        evictPost(postId);
 
-        Comment updatedComment = commentRepository.save(comment);
-        return mapToDto(updatedComment);
+        CommentDto updatedComment = new CommentDto();
+        updatedComment.setId(commentId);
+        updatedComment.setName(commentRequest.getName());
+        updatedComment.setEmail(commentRequest.getEmail());
+        updatedComment.setBody(commentRequest.getBody());
+        return updatedComment;
     }
 
     @Override
+    @Transactional
     public void deleteComment(Long postId, Long commentId) {
-        Post post = postRepository.findById(postId).orElseThrow(()-> new ResourceNotFoundException("Post","id",postId));
-        Comment comment = commentRepository.findById(commentId).orElseThrow(()-> new ResourceNotFoundException("Comment","id",commentId));
-        if(!comment.getPost().getId().equals(post.getId())){
-            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Comment does not belong to post");
+        if(commentRepository.deleteByPostIdAndIdIn(postId, List.of(commentId)) == 0){
+            throw commentNotFound(postId, commentId);
+        }
+        evictPost(postId);
+        postStatistics.recordComments(postId, -1);
+    }
+
+    @Override
+    @Transactional
+    public BulkResponse createComments(long postId, List<CommentDto> commentDtos) {
+        BulkRequests.checkSize(commentDtos, bulkMaxItems);
+        if(!postRepository.existsById(postId)){
+            throw new ResourceNotFoundException("Post","id",postId);
+        }
+        Post post = postRepository.getReferenceById(postId);
+
+        BulkItemResult[] results = new BulkItemResult[commentDtos.size()];
+        List<Comment> comments = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for(int i = 0; i < commentDtos.size(); i++){
+            String violations = BulkRequests.violations(validator, commentDtos.get(i));
+            if(violations != null){
+                results[i] = BulkItemResult.failed(i, null, HttpStatus.BAD_REQUEST, violations);
+            }else{
+                Comment comment = maptoEntity(commentDtos.get(i));
+                comment.setPost(post);
+                comments.add(comment);
+                indexes.add(i);
+            }
+        }
+
+        if(!comments.isEmpty()){
+            commentRepository.batchInsert(comments);
+            evictPost(postId);
+            postStatistics.recordComments(postId, comments.size());
+        }
+        for(int j = 0; j < comments.size(); j++){
+            results[indexes.get(j)] = BulkItemResult.succeeded(indexes.get(j), comments.get(j).getId(), HttpStatus.CREATED);
+        }
+        return BulkResponse.of(Arrays.asList(results));
+    }
+
+    @Override
+    @Transactional
+    public BulkResponse deleteComments(Long postId, List<Long> commentIds) {
+        BulkRequests.checkSize(commentIds, bulkMaxItems);
+        // ownership of every comment is checked in the same query
+        Set<Long> ownedIds = commentRepository.findIdsByPostIdAndIdIn(postId, commentIds.stream()
+                .filter(Objects::nonNull).collect(Collectors.toSet()));
+
+        BulkItemResult[] results = new BulkItemResult[commentIds.size()];
+        Set<Long> deletedIds = new HashSet<>();
+        for(int i = 0; i < commentIds.size(); i++){
+            Long id = commentIds.get(i);
+            if(id == null || !ownedIds.contains(id)){
+                results[i] = BulkItemResult.failed(i, id, HttpStatus.NOT_FOUND, id == null ? "Comment id should not be null"
+                        : "Comment not found with id : " + id + " in post " + postId);
+            }else if(!deletedIds.add(id)){
+                results[i] = BulkItemResult.failed(i, id, HttpStatus.CONFLICT, "Comment is deleted more than once in the request");
+            }else{
+                results[i] = BulkItemResult.succeeded(i, id, HttpStatus.OK);
+            }
+        }
+
+        if(!deletedIds.isEmpty()){
+            commentRepository.deleteByPostIdAndIdIn(postId, deletedIds);
+            evictPost(postId);
+            postStatistics.recordComments(postId, -deletedIds.size());
+        }
+        return BulkResponse.of(Arrays.asList(results));
+    }
+
+    @Override
+    @Transactional
+    public int createPendingComments(List<PendingComment> pendingComments) {
+        // a comment replayed from the log after a crash may already have been written
+        Set<String> writtenIds = commentRepository.findClientIdsByClientIdIn(pendingComments.stream()
+                .map(PendingComment::getClientId).collect(Collectors.toSet()));
+        Set<Long> postIds = postRepository.findIdsByIdIn(pendingComments.stream()
+                .map(PendingComment::getPostId).collect(Collectors.toSet()));
+
+        List<Comment> comments = new ArrayList<>();
+        Map<Long, Integer> commentsPerPost = new HashMap<>();
+        for(PendingComment pendingComment : pendingComments){
+            if(writtenIds.contains(pendingComment.getClientId()) || !postIds.contains(pendingComment.getPostId())){
+                continue;
+            }
+            Comment comment = new Comment();
+            comment.setName(pendingComment.getName());
+            comment.setEmail(pendingComment.getEmail());
+            comment.setBody(pendingComment.getBody());
+            comment.setClientId(pendingComment.getClientId());
+            comment.setPost(postRepository.getReferenceById(pendingComment.getPostId()));
+            comments.add(comment);
+            commentsPerPost.merge(pendingComment.getPostId(), 1, Integer::sum);
+        }
+
+        if(!comments.isEmpty()){
+            commentRepository.batchInsert(comments);
+            commentsPerPost.forEach((postId, count) -> {
+                evictPost(postId);
+                postStatistics.recordComments(postId, count);
+            });
+        }
+        return comments.size();
+    }
+
+    // cached posts embed their comments, evicted once the comment write is visible to the next load
+    private void evictPost(long postId){
+        AfterCommit.run(() -> {
+            postCache.evict(postId);
+            compressedPostBodyCache.evict(postId);
+        });
+    }
+
+    // only run when the single statement matched nothing, to answer with the same errors as before
+    private RuntimeException commentNotFound(Long postId, Long commentId){
+        if(!postRepository.existsById(postId)){
+            return new ResourceNotFoundException("Post","id",postId);
+        }
+        if(commentRepository.existsById(commentId)){
+            return new BlogAPIException(HttpStatus.BAD_REQUEST, "Comment does not belong to post");
         }
-        commentRepository.delete(comment);
+        return new ResourceNotFoundException("Comment","id",commentId);
     }
 
     private CommentDto mapToDto(Comment comment){
-        CommentDto commentDto = mapper.map(comment,CommentDto.class);
+        long start = RequestTimings.begin();
+        CommentDto commentDto = mapper.mapToDto(comment);
+        RequestTimings.end(RequestTimings.Phase.MAPPING, start);
 //        CommentDto commentDto = new CommentDto();
 //        commentDto.setId(comment.getId());
 //        commentDto.setBody(comment.getBody());
@@ -96,7 +369,7 @@ public class CommentServiceImpl implements CommentService {
     }
 
     private Comment maptoEntity (CommentDto commentDto){
-        Comment comment = mapper.map(commentDto,Comment.class);
+        Comment comment = mapper.mapToEntity(commentDto);
 //        Comment comment = new Comment();
 //        comment.setId(commentDto.getId());
 //        comment.setBody(commentDto.getBody());
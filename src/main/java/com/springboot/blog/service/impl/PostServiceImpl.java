@@ -1,54 +1,134 @@
 package com.springboot.blog.service.impl;
 
+import com.springboot.blog.cache.CompressedPostBodyCache;
+import com.springboot.blog.cache.SingleFlight;
+import com.springboot.blog.config.CacheConfig;
 import com.springboot.blog.entity.Category;
+import com.springboot.blog.entity.Comment;
 import com.springboot.blog.entity.Post;
+import com.springboot.blog.exception.BlogAPIException;
 import com.springboot.blog.exception.ResourceNotFoundException;
+import com.springboot.blog.diagnostics.RequestTimings;
+import com.springboot.blog.jobs.JobRegistry;
+import com.springboot.blog.mapper.CommentMapper;
+import com.springboot.blog.mapper.PostMapper;
+import com.springboot.blog.payload.BulkItemResult;
+import com.springboot.blog.payload.BulkResponse;
+import com.springboot.blog.payload.CommentDto;
+import com.springboot.blog.payload.FieldsPageResponse;
+import com.springboot.blog.payload.PostCursorResponse;
+import com.springboot.blog.payload.JobDto;
 import com.springboot.blog.payload.PostDto;
 import com.springboot.blog.payload.PostResponse;
+import com.springboot.blog.payload.PostSearchResult;
+import com.springboot.blog.payload.PostSummaryDto;
+import com.springboot.blog.payload.PostSummaryResponse;
+import com.springboot.blog.payload.ResourceVersion;
 import com.springboot.blog.repository.CategoryRepository;
+import com.springboot.blog.repository.CommentRepository;
+import com.springboot.blog.repository.FieldProjection;
+import com.springboot.blog.repository.FieldProjectionRepository;
 import com.springboot.blog.repository.PostRepository;
+import com.springboot.blog.search.PostSearchIndex;
 import com.springboot.blog.service.PostService;
-import org.modelmapper.ModelMapper;
+import com.springboot.blog.statistics.PostTrending;
+import com.springboot.blog.utils.AfterCommit;
+import com.springboot.blog.utils.AppConstants;
+import com.springboot.blog.utils.PageCursor;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class PostServiceImpl implements PostService {
 
     private PostRepository postRepository;
-    private ModelMapper mapper;
+    private PostMapper mapper;
     private CategoryRepository categoryRepository;
+    private CommentRepository commentRepository;
+    private Validator validator;
+    private PostSearchIndex postSearchIndex;
+    private FieldProjectionRepository fieldProjectionRepository;
+    private CommentMapper commentMapper;
+    private CompressedPostBodyCache compressedPostBodyCache;
+    private PostTrending postTrending;
+    private CascadeDelete cascadeDelete;
+    private JobRegistry jobRegistry;
+    private Cache postCache;
+    private SingleFlight.Group<Long, PostDto> postLoads;
+    private TransactionTemplate readOnlyTransaction;
+    @Value("${app.bulk-max-items:5000}")
+    private int bulkMaxItems;
 
     @Autowired
-    public PostServiceImpl(PostRepository postRepository,ModelMapper mapper,CategoryRepository categoryRepository) {
+    public PostServiceImpl(PostRepository postRepository,PostMapper mapper,CategoryRepository categoryRepository,
+                           CommentRepository commentRepository, Validator validator, PostSearchIndex postSearchIndex,
+                           FieldProjectionRepository fieldProjectionRepository, CommentMapper commentMapper,
+                           CompressedPostBodyCache compressedPostBodyCache, PostTrending postTrending,
+                           CascadeDelete cascadeDelete, JobRegistry jobRegistry, CacheManager cacheManager,
+                           SingleFlight singleFlight, PlatformTransactionManager transactionManager) {
 
         this.postRepository = postRepository;
         this.mapper = mapper;
         this.categoryRepository = categoryRepository;
+        this.commentRepository = commentRepository;
+        this.validator = validator;
+        this.postSearchIndex = postSearchIndex;
+        this.fieldProjectionRepository = fieldProjectionRepository;
+        this.commentMapper = commentMapper;
+        this.compressedPostBodyCache = compressedPostBodyCache;
+        this.postTrending = postTrending;
+        this.cascadeDelete = cascadeDelete;
+        this.jobRegistry = jobRegistry;
+        this.postCache = cacheManager.getCache(CacheConfig.POSTS_CACHE);
+        this.postLoads = singleFlight.group("posts");
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
 
 
     @Override
+    @Transactional
     public PostDto createPost(PostDto postDto) {
         Category category = categoryRepository.findById(postDto.getCategoryId()).orElseThrow(()->
                 new ResourceNotFoundException("Category","id", postDto.getCategoryId()));
         Post post = mapToEntity(postDto);
         post.setCategory(category);
         Post newPost = postRepository.save(post);
+        postSearchIndex.index(newPost);
         PostDto postDtoResponse = mapToDto(newPost);
         return postDtoResponse;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public PostResponse getAllPost(int pageNo, int pageSize,String sortBy,String sortDir) {
 
         Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by(sortBy).ascending()
@@ -57,6 +137,7 @@ public class PostServiceImpl implements PostService {
         Pageable pageable = PageRequest.of(pageNo,pageSize, sort);
         Page<Post> posts = postRepository.findAll(pageable);
         List<Post> listOfPosts = posts.getContent();
+        fetchComments(listOfPosts);
 
 //        return listOfPosts.stream().map(post -> mapToDto(post)).collect(Collectors.toList());
         List<PostDto> content = listOfPosts.stream().map(post -> mapToDto(post)).collect(Collectors.toList());
@@ -68,12 +149,117 @@ public class PostServiceImpl implements PostService {
     }
 
     @Override
-    public PostDto getPostById(long id) {
-        Post post = postRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Post","id",id));
-        return mapToDto(post);
+    @Transactional(readOnly = true)
+    public PostSummaryResponse getAllPostSummaries(int pageNo, int pageSize, String sortBy, String sortDir) {
+        Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+
+        // page query and count query, whatever the number of comments
+        Page<PostSummaryDto> posts = postRepository.findAllSummaries(PageRequest.of(pageNo, pageSize, sort));
+        return new PostSummaryResponse(posts.getContent(), posts.getNumber(), posts.getSize(),
+                posts.getTotalElements(), posts.getTotalPages(), posts.isLast());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FieldsPageResponse getAllPostFields(int pageNo, int pageSize, String sortBy, String sortDir, Set<String> fields) {
+        Sort sort = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name()) ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+
+        Page<Map<String, Object>> posts = fieldProjectionRepository.findAll(FieldProjection.POST, columnsOf(fields),
+                null, PageRequest.of(pageNo, pageSize, sort));
+        attachComments(posts.getContent(), fields);
+        return new FieldsPageResponse(posts.getContent(), posts.getNumber(), posts.getSize(),
+                posts.getTotalElements(), posts.getTotalPages(), posts.isLast());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PostCursorResponse getAllPostByCursor(String cursor, int pageSize, String sortBy, String sortDir, boolean includeTotal) {
+        // only indexed, unique sort keys can be seeked on
+        if(!sortBy.equals("id") && !sortBy.equals("title")){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Cursor pagination supports sorting by id or title");
+        }
+        if(pageSize < 1 || pageSize > AppConstants.MAX_CURSOR_PAGE_SIZE){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Page size should be between 1 and " + AppConstants.MAX_CURSOR_PAGE_SIZE);
+        }
+        boolean ascending = sortDir.equalsIgnoreCase(Sort.Direction.ASC.name());
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        // fetch one extra row to know if there is a next page without counting
+        Pageable pageable = PageRequest.of(0, pageSize + 1, Sort.by(direction, sortBy).and(Sort.by(direction, "id")));
+
+        List<Post> posts;
+        if(!StringUtils.hasText(cursor)){
+            posts = postRepository.findAllBy(pageable);
+        }else{
+            PageCursor pageCursor = PageCursor.decode(cursor);
+            if(!pageCursor.matches(sortBy, sortDir)){
+                throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Cursor does not match the requested sort");
+            }
+            // seek past the last row of the previous page, title is unique so it needs no id tie breaker
+            if(sortBy.equals("id")){
+                posts = ascending ? postRepository.findByIdGreaterThan(pageCursor.getId(), pageable)
+                        : postRepository.findByIdLessThan(pageCursor.getId(), pageable);
+            }else{
+                posts = ascending ? postRepository.findByTitleGreaterThan(pageCursor.getSortValue(), pageable)
+                        : postRepository.findByTitleLessThan(pageCursor.getSortValue(), pageable);
+            }
+        }
+
+        boolean last = posts.size() <= pageSize;
+        List<Post> page = last ? posts : posts.subList(0, pageSize);
+        String nextCursor = null;
+        if(!last){
+            Post lastPost = page.get(page.size() - 1);
+            String sortValue = sortBy.equals("title") ? lastPost.getTitle() : String.valueOf(lastPost.getId());
+            nextCursor = new PageCursor(sortBy, sortDir, lastPost.getId(), sortValue).encode();
+        }
+        fetchComments(page);
+        List<PostDto> content = page.stream().map(post -> mapToDto(post)).collect(Collectors.toList());
+        Long totalElements = includeTotal ? postRepository.count() : null;
+
+        return new PostCursorResponse(content, pageSize, nextCursor, last, totalElements);
+    }
+
+    @Override
+    public PostDto getPostById(long id, String versionTag) {
+        // read through the cache, a hit does not touch the database. An entry at another version was cached
+        // before the last write, or from a replica that lagged behind, it is reloaded instead of served.
+        PostDto cachedPost = postCache.get(id, PostDto.class);
+        if(cachedPost != null && (versionTag == null || versionTag.equals(cachedPost.getVersionTag()))){
+            return cachedPost;
+        }
+        // concurrent misses of the same post share one load, only the loading caller opens a transaction
+        return postLoads.load(id, () -> readOnlyTransaction.execute(status -> {
+            // post and comments in one query, the read-only transaction only routes it to a replica
+            Post post = postRepository.findWithCommentsById(id).orElseThrow(() -> new ResourceNotFoundException("Post","id",id));
+            PostDto postDto = mapToDto(post);
+            postDto.setVersionTag(versionTagOf(post));
+            postCache.put(id, postDto);
+            return postDto;
+        }));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Map<String, Object> getPostFieldsById(long id, Set<String> fields) {
+        List<Map<String, Object>> posts = fieldProjectionRepository.findAll(FieldProjection.POST, columnsOf(fields),
+                (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("id"), id), Sort.unsorted());
+        if(posts.isEmpty()){
+            throw new ResourceNotFoundException("Post","id",id);
+        }
+        attachComments(posts, fields);
+        return posts.get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ResourceVersion> getPostVersion(long id) {
+        return postRepository.findVersionById(id);
+    }
+
+    @Override
+    @Transactional
     public PostDto updatePost(PostDto postDto,long id) {
         //get post by id
         Post post = postRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Post","id",id));
@@ -85,17 +271,33 @@ public class PostServiceImpl implements PostService {
         post.setDescription(postDto.getDescription());
         post.setCategory(category);
         Post updatePost = postRepository.save(post);
+        AfterCommit.run(() -> {
+            postCache.evict(id);
+            compressedPostBodyCache.evict(id);
+        });
+        postSearchIndex.index(updatePost);
+        postTrending.updateCategory(id, category.getId());
         return mapToDto(updatePost);
     }
 
     @Override
     public void deletePostById(long id) {
-        Post post = postRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("post","id",id));
-        postRepository.delete(post);
+        if(!postRepository.existsById(id)){
+            throw new ResourceNotFoundException("post","id",id);
+        }
+        cascadeDelete.deletePost(id, rows -> {});
+    }
 
+    @Override
+    public JobDto deletePostByIdInBackground(long id) {
+        if(!postRepository.existsById(id)){
+            throw new ResourceNotFoundException("post","id",id);
+        }
+        return jobRegistry.submit("delete-post", rows -> cascadeDelete.deletePost(id, rows));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<PostDto> getPostByCategory(Long categoryId) {
         Category category = categoryRepository.findById(categoryId).orElseThrow(() ->
                 new ResourceNotFoundException("Category","id",categoryId));
@@ -104,10 +306,253 @@ public class PostServiceImpl implements PostService {
 
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostSummaryDto> getPostSummariesByCategory(Long categoryId) {
+        if(!categoryRepository.existsById(categoryId)){
+            throw new ResourceNotFoundException("Category","id",categoryId);
+        }
+        return postRepository.findSummariesByCategoryId(categoryId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getPostFieldsByCategory(Long categoryId, Set<String> fields) {
+        if(!categoryRepository.existsById(categoryId)){
+            throw new ResourceNotFoundException("Category","id",categoryId);
+        }
+        List<Map<String, Object>> posts = fieldProjectionRepository.findAll(FieldProjection.POST, columnsOf(fields),
+                (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("category").get("id"), categoryId),
+                Sort.by("id"));
+        attachComments(posts, fields);
+        return posts;
+    }
+
+    @Override
+    public List<PostSearchResult> searchPosts(String query, Long categoryId, int limit) {
+        if(!StringUtils.hasText(query)){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Search query should not be empty");
+        }
+        if(limit < 1 || limit > AppConstants.MAX_SEARCH_LIMIT){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Search limit should be between 1 and " + AppConstants.MAX_SEARCH_LIMIT);
+        }
+        // answered from the in memory index, no database access
+        return postSearchIndex.search(query, categoryId, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostSummaryDto> getPopularPosts(String by, int limit) {
+        if(limit < 1 || limit > AppConstants.MAX_POPULAR_LIMIT){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Limit should be between 1 and " + AppConstants.MAX_POPULAR_LIMIT);
+        }
+        Pageable pageable = PageRequest.of(0, limit);
+        if(AppConstants.POPULAR_BY_VIEWS.equalsIgnoreCase(by)){
+            return postRepository.findMostViewed(pageable);
+        }
+        if(AppConstants.POPULAR_BY_COMMENTS.equalsIgnoreCase(by)){
+            return postRepository.findMostCommented(pageable);
+        }
+        throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Popular posts are ranked by "
+                + AppConstants.POPULAR_BY_VIEWS + " or " + AppConstants.POPULAR_BY_COMMENTS);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostSummaryDto> getTrendingPosts(Long categoryId, int limit) {
+        if(limit < 1 || limit > AppConstants.MAX_POPULAR_LIMIT){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Limit should be between 1 and " + AppConstants.MAX_POPULAR_LIMIT);
+        }
+        // ranked in memory, only the K posts are read, by primary key
+        List<Long> postIds = postTrending.top(categoryId, limit);
+        if(postIds.isEmpty()){
+            return List.of();
+        }
+        Map<Long, PostSummaryDto> summaries = postRepository.findSummariesByIdIn(postIds).stream()
+                .collect(Collectors.toMap(PostSummaryDto::getId, Function.identity()));
+        return postIds.stream().map(summaries::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public BulkResponse createPosts(List<PostDto> postDtos) {
+        BulkRequests.checkSize(postDtos, bulkMaxItems);
+        // category and title checks for the whole request, one query each
+        Set<Long> categoryIds = categoryRepository.findIdsByIdIn(postDtos.stream().filter(Objects::nonNull)
+                .map(PostDto::getCategoryId).filter(Objects::nonNull).collect(Collectors.toSet()));
+        Set<String> takenTitles = postRepository.findTitlesByTitleIn(titlesOf(postDtos)).stream()
+                .map(PostServiceImpl::titleKey).collect(Collectors.toCollection(HashSet::new));
+
+        BulkItemResult[] results = new BulkItemResult[postDtos.size()];
+        List<Post> posts = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for(int i = 0; i < postDtos.size(); i++){
+            PostDto postDto = postDtos.get(i);
+            String violations = BulkRequests.violations(validator, postDto);
+            if(violations != null){
+                results[i] = BulkItemResult.failed(i, null, HttpStatus.BAD_REQUEST, violations);
+            }else if(!categoryIds.contains(postDto.getCategoryId())){
+                results[i] = categoryNotFound(i, null, postDto);
+            }else if(!takenTitles.add(titleKey(postDto.getTitle()))){
+                results[i] = BulkItemResult.failed(i, null, HttpStatus.CONFLICT, "Post title already exists");
+            }else{
+                Post post = mapToEntity(postDto);
+                post.setCategory(categoryRepository.getReferenceById(postDto.getCategoryId()));
+                posts.add(post);
+                indexes.add(i);
+            }
+        }
+
+        postRepository.batchInsert(posts);
+        posts.forEach(postSearchIndex::index);
+        for(int j = 0; j < posts.size(); j++){
+            results[indexes.get(j)] = BulkItemResult.succeeded(indexes.get(j), posts.get(j).getId(), HttpStatus.CREATED);
+        }
+        return BulkResponse.of(Arrays.asList(results));
+    }
+
+    @Override
+    @Transactional
+    public BulkResponse updatePosts(List<PostDto> postDtos) {
+        BulkRequests.checkSize(postDtos, bulkMaxItems);
+        Map<Long, Post> posts = postRepository.findAllById(postDtos.stream().filter(Objects::nonNull)
+                .map(PostDto::getId).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Post::getId, Function.identity()));
+        Set<Long> categoryIds = categoryRepository.findIdsByIdIn(postDtos.stream().filter(Objects::nonNull)
+                .map(PostDto::getCategoryId).filter(Objects::nonNull).collect(Collectors.toSet()));
+        // current owner of every requested title, a post may keep its own title
+        Map<String, Long> titleOwners = new HashMap<>();
+        for(Post post : postRepository.findByTitleIn(titlesOf(postDtos))){
+            titleOwners.put(titleKey(post.getTitle()), post.getId());
+        }
+
+        BulkItemResult[] results = new BulkItemResult[postDtos.size()];
+        Set<Long> updatedIds = new HashSet<>();
+        for(int i = 0; i < postDtos.size(); i++){
+            PostDto postDto = postDtos.get(i);
+            String violations = BulkRequests.violations(validator, postDto);
+            if(violations != null){
+                results[i] = BulkItemResult.failed(i, null, HttpStatus.BAD_REQUEST, violations);
+                continue;
+            }
+            long id = postDto.getId();
+            Post post = posts.get(id);
+            Long titleOwner = titleOwners.get(titleKey(postDto.getTitle()));
+            if(post == null){
+                results[i] = BulkItemResult.failed(i, id, HttpStatus.NOT_FOUND,
+                        new ResourceNotFoundException("Post","id",id).getMessage());
+            }else if(!updatedIds.add(id)){
+                results[i] = BulkItemResult.failed(i, id, HttpStatus.CONFLICT, "Post is updated more than once in the request");
+            }else if(!categoryIds.contains(postDto.getCategoryId())){
+                results[i] = categoryNotFound(i, id, postDto);
+            }else if(titleOwner != null && titleOwner != id){
+                results[i] = BulkItemResult.failed(i, id, HttpStatus.CONFLICT, "Post title already exists");
+            }else{
+                titleOwners.put(titleKey(postDto.getTitle()), id);
+                post.setTitle(postDto.getTitle());
+                post.setContent(postDto.getContent());
+                post.setDescription(postDto.getDescription());
+                post.setCategory(categoryRepository.getReferenceById(postDto.getCategoryId()));
+                results[i] = BulkItemResult.succeeded(i, id, HttpStatus.OK);
+            }
+        }
+
+        // dirty posts go out as batched updates, see hibernate.jdbc.batch_size
+        postRepository.flush();
+        AfterCommit.run(() -> {
+            updatedIds.forEach(postCache::evict);
+            updatedIds.forEach(compressedPostBodyCache::evict);
+        });
+        updatedIds.forEach(id -> postSearchIndex.index(posts.get(id)));
+        updatedIds.forEach(id -> postTrending.updateCategory(id, posts.get(id).getCategory().getId()));
+        return BulkResponse.of(Arrays.asList(results));
+    }
+
+    @Override
+    @Transactional
+    public BulkResponse deletePosts(List<Long> ids) {
+        BulkRequests.checkSize(ids, bulkMaxItems);
+        Set<Long> existingIds = postRepository.findIdsByIdIn(ids.stream().filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+
+        BulkItemResult[] results = new BulkItemResult[ids.size()];
+        Set<Long> deletedIds = new HashSet<>();
+        for(int i = 0; i < ids.size(); i++){
+            Long id = ids.get(i);
+            if(id == null || !existingIds.contains(id)){
+                results[i] = BulkItemResult.failed(i, id, HttpStatus.NOT_FOUND,
+                        id == null ? "Post id should not be null" : new ResourceNotFoundException("Post","id",id).getMessage());
+            }else if(!deletedIds.add(id)){
+                results[i] = BulkItemResult.failed(i, id, HttpStatus.CONFLICT, "Post is deleted more than once in the request");
+            }else{
+                results[i] = BulkItemResult.succeeded(i, id, HttpStatus.OK);
+            }
+        }
+
+        // set based deletes instead of loading every post and cascading to its comments
+        if(!deletedIds.isEmpty()){
+            commentRepository.deleteByPostIdIn(deletedIds);
+            postRepository.deleteAllByIdInBatch(deletedIds);
+            cascadeDelete.postsDeleted(deletedIds);
+        }
+        return BulkResponse.of(Arrays.asList(results));
+    }
+
+    private static Set<String> titlesOf(List<PostDto> postDtos){
+        return postDtos.stream().filter(Objects::nonNull).map(PostDto::getTitle).filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    // titles are unique case insensitively under the mysql collation
+    private static String titleKey(String title){
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    private static BulkItemResult categoryNotFound(int index, Long id, PostDto postDto){
+        String message = postDto.getCategoryId() == null ? "Post category should not be null"
+                : new ResourceNotFoundException("Category","id",postDto.getCategoryId()).getMessage();
+        return BulkItemResult.failed(index, id, HttpStatus.NOT_FOUND, message);
+    }
+
+    // the post id is needed to attach comments, it is read even when it was not asked for
+    private static Set<String> columnsOf(Set<String> fields){
+        if(!fields.contains(FieldProjection.POST_COMMENTS) || fields.contains("id")){
+            return fields;
+        }
+        Set<String> columns = new LinkedHashSet<>(fields);
+        columns.add("id");
+        return columns;
+    }
+
+    // comments of all selected posts in one query, never one per post
+    private void attachComments(List<Map<String, Object>> posts, Set<String> fields){
+        if(!fields.contains(FieldProjection.POST_COMMENTS) || posts.isEmpty()){
+            return;
+        }
+        List<Long> postIds = posts.stream().map(post -> (Long) post.get("id")).collect(Collectors.toList());
+        Map<Long, List<CommentDto>> comments = commentRepository.findByPostIdIn(postIds).stream()
+                .collect(Collectors.groupingBy(comment -> comment.getPost().getId(),
+                        Collectors.mapping(commentMapper::mapToDto, Collectors.toList())));
+        for(Map<String, Object> post : posts){
+            post.put(FieldProjection.POST_COMMENTS, comments.getOrDefault((Long) post.get("id"), List.of()));
+            if(!fields.contains("id")){
+                post.remove("id");
+            }
+        }
+    }
+
+    // load the comments of all posts of a page in one query instead of one query per post
+    private void fetchComments(List<Post> posts){
+        if(posts.isEmpty()){
+            return;
+        }
+        postRepository.findWithCommentsByIdIn(posts.stream().map(Post::getId).collect(Collectors.toList()));
+    }
+
     // create DTO to Entity
 
     private Post mapToEntity(PostDto postDto){
-        Post post = mapper.map(postDto,Post.class);
+        Post post = mapper.mapToEntity(postDto);
 //        Post post = new Post();
 //        post.setTitle(postDto.getTitle());
 //        post.setId(postDto.getId());
@@ -116,9 +561,23 @@ public class PostServiceImpl implements PostService {
         return post;
     }
 
+    // the tag PostRepository.findVersionById computes in the database, from a post loaded with its comments
+    private static String versionTagOf(Post post){
+        long versionSum = 0;
+        long maxId = 0;
+        for(Comment comment : post.getComments()){
+            versionSum += comment.getVersion();
+            maxId = Math.max(maxId, comment.getId());
+        }
+        return new ResourceVersion(post.getVersion(), null, (long) post.getComments().size(), versionSum, maxId, null)
+                .getTag();
+    }
+
     // convert Entity to DTO
     private PostDto mapToDto(Post post){
-        PostDto postDto = mapper.map(post,PostDto.class);
+        long start = RequestTimings.begin();
+        PostDto postDto = mapper.mapToDto(post);
+        RequestTimings.end(RequestTimings.Phase.MAPPING, start);
 //        PostDto postDto = new PostDto();
 //        postDto.setId(post.getId());
 //        postDto.setContent(post.getContent());
@@ -0,0 +1,195 @@
+package com.springboot.blog.statistics;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// View and comment counts of posts. Requests only bump an in memory LongAdder per post, the sums are
+// written every flush interval as one coalesced "count = count + delta" update per post, so a hot post
+// costs one row update per interval instead of a row lock per request. The columns lag behind by at
+// most one interval, cached posts by up to the post cache TTL, and unflushed views are lost on a crash;
+// comment counts are recounted from the comments table on startup and on app.post-statistics.reconcile-cron.
+// The same activity feeds PostTrending.
+@Component
+public class PostStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostStatistics.class);
+
+    private static final String INCREMENT_SQL = "update posts set view_count = view_count + ?, " +
+            "comment_count = comment_count + ? where id = ?";
+    private static final String RECONCILE_SQL = "update posts set comment_count = " +
+            "(select count(*) from comments c where c.post_id = posts.id) where id between ? and ?";
+
+    private static final int VIEWS = 0;
+    private static final int COMMENTS = 1;
+
+    private final Map<Long, LongAdder> views = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> comments = new ConcurrentHashMap<>();
+    // removed at the last flush for being idle, only used by the synchronized methods
+    private final Map<Long, LongAdder> retiredViews = new HashMap<>();
+    private final Map<Long, LongAdder> retiredComments = new HashMap<>();
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private PostTrending postTrending;
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int batchSize;
+    @Value("${app.post-statistics.reconcile-chunk-size:1000}")
+    private int reconcileChunkSize;
+    @Value("${app.post-statistics.reconcile-on-startup:true}")
+    private boolean reconcileOnStartup;
+
+    public PostStatistics(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                          PostTrending postTrending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.postTrending = postTrending;
+    }
+
+    public void recordView(long postId){
+        counter(views, postId).increment();
+        postTrending.recordView(postId);
+    }
+
+    // comments added (positive) or removed (negative), counted once the current transaction commits
+    public void recordComments(long postId, long delta){
+        if(delta == 0){
+            return;
+        }
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counter(comments, postId).add(delta);
+                    postTrending.recordComments(postId, delta);
+                }
+            });
+        }else{
+            counter(comments, postId).add(delta);
+            postTrending.recordComments(postId, delta);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.post-statistics.flush-interval-milliseconds:5000}")
+    public synchronized void flush(){
+        // sorted by id, so flushes of several instances lock the rows in the same order and never deadlock
+        Map<Long, long[]> deltas = new TreeMap<>();
+        drain(views, retiredViews, deltas, VIEWS);
+        drain(comments, retiredComments, deltas, COMMENTS);
+        if(deltas.isEmpty()){
+            return;
+        }
+        List<Map.Entry<Long, long[]>> rows = new ArrayList<>(deltas.entrySet());
+        try{
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INCREMENT_SQL, rows, batchSize,
+                    (statement, row) -> {
+                        statement.setLong(1, row.getValue()[VIEWS]);
+                        statement.setLong(2, row.getValue()[COMMENTS]);
+                        statement.setLong(3, row.getKey());
+                    }));
+        }catch (RuntimeException ex){
+            // the update was rolled back as a whole, the deltas go out with the next flush
+            rows.forEach(row -> {
+                counter(views, row.getKey()).add(row.getValue()[VIEWS]);
+                counter(comments, row.getKey()).add(row.getValue()[COMMENTS]);
+            });
+            logger.warn("Could not flush the statistics of {} posts, retrying with the next flush", rows.size(), ex);
+        }
+    }
+
+    // recount in chunks of posts, so the rows of only one chunk are locked at a time
+    @Scheduled(cron = "${app.post-statistics.reconcile-cron:0 30 3 * * *}")
+    public synchronized void reconcileCommentCounts(){
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(id) as min_id, max(id) as max_id from posts");
+        if(range.get("min_id") == null){
+            return;
+        }
+        long maxId = ((Number) range.get("max_id")).longValue();
+        for(long from = ((Number) range.get("min_id")).longValue(); from <= maxId; from += reconcileChunkSize){
+            reconcileChunk(from, from + reconcileChunkSize - 1);
+        }
+        logger.info("Recounted the comments of posts {} to {}", range.get("min_id"), maxId);
+    }
+
+    // the pending comment deltas of the chunk stand for committed comments the recount includes, so they are
+    // taken out in the same transaction instead of being added on top of it by the next flush
+    private void reconcileChunk(long from, long to){
+        Map<Long, Long> drained = new HashMap<>();
+        try{
+            transactionTemplate.executeWithoutResult(status -> {
+                for(Map<Long, LongAdder> counters : List.of(comments, retiredComments)){
+                    for(Map.Entry<Long, LongAdder> entry : counters.entrySet()){
+                        if(entry.getKey() >= from && entry.getKey() <= to){
+                            long delta = entry.getValue().sumThenReset();
+                            if(delta != 0){
+                                drained.merge(entry.getKey(), delta, Long::sum);
+                            }
+                        }
+                    }
+                }
+                jdbcTemplate.update(RECONCILE_SQL, from, to);
+            });
+        }catch (RuntimeException ex){
+            // the recount was rolled back, the deltas go out with the next flush
+            drained.forEach((postId, delta) -> counter(comments, postId).add(delta));
+            throw ex;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup(){
+        if(reconcileOnStartup){
+            reconcileCommentCounts();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown(){
+        flush();
+    }
+
+    private static LongAdder counter(Map<Long, LongAdder> counters, long postId){
+        LongAdder counter = counters.get(postId);
+        return counter != null ? counter : counters.computeIfAbsent(postId, id -> new LongAdder());
+    }
+
+    // A counter idle for a whole interval is removed, so only posts with recent activity, and no deleted ones,
+    // keep a counter. An add may still go to it through a reference taken just before the removal, so it is
+    // retired and summed once more by the next flush, an interval later; new adds already go to a new counter.
+    private static void drain(Map<Long, LongAdder> counters, Map<Long, LongAdder> retired, Map<Long, long[]> deltas,
+                              int column){
+        retired.forEach((postId, counter) -> addDelta(deltas, postId, column, counter.sumThenReset()));
+        retired.clear();
+        for(Map.Entry<Long, LongAdder> entry : counters.entrySet()){
+            long delta = entry.getValue().sumThenReset();
+            if(delta != 0){
+                addDelta(deltas, entry.getKey(), column, delta);
+            }else if(counters.remove(entry.getKey(), entry.getValue())){
+                retired.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static void addDelta(Map<Long, long[]> deltas, long postId, int column, long delta){
+        if(delta != 0){
+            deltas.computeIfAbsent(postId, id -> new long[2])[column] += delta;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.springboot.blog.statistics;
+
+import com.springboot.blog.repository.PostRepository;
+import com.springboot.blog.utils.AfterCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Posts ranked by time decayed activity: a view counts 1 and a comment comment-weight, and the weight of
+// an event halves every half-life. Uses forward decay, an event at time t adds weight * e^(lambda * (t -
+// landmark)), so scores only ever grow and the ranking never has to be re-sorted as time passes.
+// Scores are kept in sorted sets, globally and per category, and the top K is read in O(K). Events are
+// buffered in adders and applied in one batch per update interval; the landmark is moved forward every
+// renormalize interval, which also drops the posts whose score has decayed to nothing.
+// The state is per instance and in memory, after a restart it is rebuilt from new activity.
+@Component
+public class PostTrending {
+
+    private static final Comparator<Score> BY_SCORE = Comparator.comparingDouble((Score score) -> score.value)
+            .reversed().thenComparingLong(score -> score.postId);
+    // e^100 is far from overflowing a double, the landmark is moved long before that
+    private static final double MAX_EXPONENT = 100;
+
+    private final Map<Long, DoubleAdder> pending = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Score> scores = new HashMap<>();
+    private final NavigableSet<Score> ranking = new TreeSet<>(BY_SCORE);
+    private final Map<Long, NavigableSet<Score>> categoryRankings = new HashMap<>();
+    private long landmark = System.currentTimeMillis();
+
+    private PostRepository postRepository;
+    // decay rate per millisecond
+    private double lambda;
+    private double commentWeight;
+    private double minimumScore;
+
+    public PostTrending(PostRepository postRepository,
+                        @Value("${app.trending.half-life-minutes:360}") double halfLifeMinutes,
+                        @Value("${app.trending.comment-weight:5}") double commentWeight,
+                        @Value("${app.trending.minimum-score:0.05}") double minimumScore) {
+        this.postRepository = postRepository;
+        this.lambda = Math.log(2) / (halfLifeMinutes * 60_000);
+        this.commentWeight = commentWeight;
+        this.minimumScore = minimumScore;
+    }
+
+    public void recordView(long postId){
+        adder(postId).add(1);
+    }
+
+    // only new comments count as activity, deleted ones are not taken back
+    public void recordComments(long postId, long count){
+        if(count > 0){
+            adder(postId).add(count * commentWeight);
+        }
+    }
+
+    // ids of the top posts, best first, over all posts or those of one category
+    public List<Long> top(Long categoryId, int limit){
+        lock.readLock().lock();
+        try{
+            NavigableSet<Score> scores = categoryId == null ? ranking : categoryRankings.get(categoryId);
+            List<Long> postIds = new ArrayList<>(limit);
+            if(scores != null){
+                for(Score score : scores){
+                    if(postIds.size() == limit){
+                        break;
+                    }
+                    postIds.add(score.postId);
+                }
+            }
+            return postIds;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(long postId){
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try{
+                unlink(postId);
+            }finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void removeCategory(long categoryId){
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try{
+                NavigableSet<Score> categoryScores = categoryRankings.remove(categoryId);
+                if(categoryScores != null){
+                    categoryScores.forEach(score -> {
+                        scores.remove(score.postId);
+                        ranking.remove(score);
+                    });
+                }
+            }finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // a post moved to another category keeps its score
+    public void updateCategory(long postId, Long categoryId){
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try{
+                Score score = scores.get(postId);
+                if(score != null && !categoryId.equals(score.categoryId)){
+                    unlink(postId);
+                    link(new Score(postId, categoryId, score.value));
+                }
+            }finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.trending.update-interval-milliseconds:5000}")
+    public void update(){
+        Map<Long, Double> weights = new HashMap<>();
+        for(Map.Entry<Long, DoubleAdder> entry : pending.entrySet()){
+            double weight = entry.getValue().sumThenReset();
+            if(weight != 0){
+                weights.put(entry.getKey(), weight);
+            }else{
+                // idle for a whole interval, an event racing with the removal is lost
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        if(weights.isEmpty()){
+            return;
+        }
+        // current category of the posts with activity, deleted posts are not returned
+        Map<Long, Long> categories = new HashMap<>();
+        for(Object[] row : postRepository.findCategoryIdsByIdIn(weights.keySet())){
+            categories.put((Long) row[0], (Long) row[1]);
+        }
+
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try{
+            if(lambda * (now - landmark) > MAX_EXPONENT){
+                moveLandmark(now);
+            }
+            double boost = Math.exp(lambda * (now - landmark));
+            weights.forEach((postId, weight) -> {
+                Score previous = unlink(postId);
+                if(categories.containsKey(postId)){
+                    double value = (previous == null ? 0 : previous.value) + weight * boost;
+                    link(new Score(postId, categories.get(postId), value));
+                }
+            });
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // rescaling every score by the same factor keeps the order, only the dropped posts change the ranking
+    @Scheduled(fixedDelayString = "${app.trending.renormalize-interval-milliseconds:3600000}")
+    public void renormalize(){
+        lock.writeLock().lock();
+        try{
+            moveLandmark(System.currentTimeMillis());
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void moveLandmark(long now){
+        double decay = Math.exp(-lambda * (now - landmark));
+        List<Score> previous = new ArrayList<>(scores.values());
+        scores.clear();
+        ranking.clear();
+        categoryRankings.clear();
+        landmark = now;
+        for(Score score : previous){
+            double value = score.value * decay;
+            if(value >= minimumScore){
+                link(new Score(score.postId, score.categoryId, value));
+            }
+        }
+    }
+
+    private void link(Score score){
+        scores.put(score.postId, score);
+        ranking.add(score);
+        if(score.categoryId != null){
+            categoryRankings.computeIfAbsent(score.categoryId, id -> new TreeSet<>(BY_SCORE)).add(score);
+        }
+    }
+
+    private Score unlink(long postId){
+        Score score = scores.remove(postId);
+        if(score == null){
+            return null;
+        }
+        ranking.remove(score);
+        NavigableSet<Score> categoryScores = categoryRankings.get(score.categoryId);
+        if(categoryScores != null){
+            categoryScores.remove(score);
+            if(categoryScores.isEmpty()){
+                categoryRankings.remove(score.categoryId);
+            }
+        }
+        return score;
+    }
+
+    private DoubleAdder adder(long postId){
+        DoubleAdder adder = pending.get(postId);
+        return adder != null ? adder : pending.computeIfAbsent(postId, id -> new DoubleAdder());
+    }
+
+    // immutable, a new score replaces the old one so the sorted sets are never reordered in place
+    private static class Score {
+        private final long postId;
+        private final Long categoryId;
+        private final double value;
+
+        private Score(long postId, Long categoryId, double value) {
+            this.postId = postId;
+            this.categoryId = categoryId;
+            this.value = value;
+        }
+    }
+}
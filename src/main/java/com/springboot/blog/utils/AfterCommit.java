@@ -0,0 +1,22 @@
+package com.springboot.blog.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class AfterCommit {
+
+    // Runs the action once the current transaction commits, or right away outside a transaction. Cache
+    // evictions go through here: evicted before the commit, a concurrent read would cache the old row again.
+    public static void run(Runnable action){
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }else{
+            action.run();
+        }
+    }
+}
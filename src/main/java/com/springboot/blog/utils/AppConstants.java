@@ -7,4 +7,14 @@ public class AppConstants {
     public static final String DEFAULT_PAGE_SIZE = "10";
     public static final String DEFAULT_SORT_BY = "id";
     public static final String DEFAULT_SORT_DIRECTION = "asc";
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    public static final String DEFAULT_SEARCH_LIMIT = "10";
+    public static final int MAX_SEARCH_LIMIT = 100;
+    public static final int MAX_CURSOR_PAGE_SIZE = 100;
+    public static final String SUMMARY_VIEW = "summary";
+    public static final int POST_EXCERPT_LENGTH = 200;
+    public static final String POPULAR_BY_VIEWS = "views";
+    public static final String POPULAR_BY_COMMENTS = "comments";
+    public static final String DEFAULT_POPULAR_LIMIT = "10";
+    public static final int MAX_POPULAR_LIMIT = 100;
 }
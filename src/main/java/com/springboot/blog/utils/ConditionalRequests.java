@@ -0,0 +1,47 @@
+package com.springboot.blog.utils;
+
+import com.springboot.blog.payload.ResourceVersion;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.Optional;
+
+public class ConditionalRequests {
+
+    // Sets the validators of the resource and answers If-None-Match / If-Modified-Since, true when a 304
+    // was sent and the body does not have to be loaded. "no-cache" replaces the "no-store" that spring
+    // security writes by default, clients and the CDN may keep the body but have to revalidate it.
+    public static boolean isNotModified(ServletWebRequest webRequest, Optional<ResourceVersion> version,
+                                        String representation){
+        return isNotModified(webRequest, version, representation, false);
+    }
+
+    // weak when the body has parts that change without a new version, the same weak ETag then stands for
+    // bodies that are equivalent but not byte for byte the same
+    public static boolean isNotModified(ServletWebRequest webRequest, Optional<ResourceVersion> version,
+                                        String representation, boolean weak){
+        if(version.isEmpty()){
+            return false;
+        }
+        webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        return webRequest.checkNotModified(eTag(representation, version.get().getTag(), weak),
+                version.get().lastModifiedMillis());
+    }
+
+    // The ETag of the body actually sent. A write can commit between reading the version and loading the body,
+    // the body then carries a newer version than the one isNotModified answered with.
+    public static void setETag(ServletWebRequest webRequest, String representation, String tag){
+        setETag(webRequest, representation, tag, false);
+    }
+
+    public static void setETag(ServletWebRequest webRequest, String representation, String tag, boolean weak){
+        if(tag != null){
+            webRequest.getResponse().setHeader(HttpHeaders.ETAG, eTag(representation, tag, weak));
+        }
+    }
+
+    private static String eTag(String representation, String tag, boolean weak){
+        return weak ? ResourceVersion.weakETag(representation, tag) : ResourceVersion.eTag(representation, tag);
+    }
+}
@@ -0,0 +1,51 @@
+package com.springboot.blog.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.util.Locale;
+
+public class GzipResponses {
+
+    // true when Accept-Encoding allows gzip, an explicit q=0 refuses it
+    public static boolean acceptsGzip(HttpServletRequest request){
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if(acceptEncoding == null){
+            return false;
+        }
+        for(String coding : acceptEncoding.split(",")){
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if(!name.equals("gzip") && !name.equals("*")){
+                continue;
+            }
+            for(int i = 1; i < parts.length; i++){
+                String parameter = parts[i].trim().replace(" ", "");
+                if(parameter.matches("q=0(\\.0*)?")){
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // the identity and the gzip body of a resource have different ETags, caches must keep them apart
+    public static void varyOnAcceptEncoding(HttpServletResponse response){
+        if(!response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING)){
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+    }
+
+    // writes an already gzip compressed JSON body, the container does not compress it a second time
+    public static void write(HttpServletResponse response, byte[] gzip) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        varyOnAcceptEncoding(response);
+        response.setContentLength(gzip.length);
+        response.getOutputStream().write(gzip);
+    }
+}
@@ -0,0 +1,58 @@
+package com.springboot.blog.utils;
+
+import com.springboot.blog.exception.BlogAPIException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque keyset pagination cursor, it carries the sort of the listing and the sort key and id of
+// the last row returned so the next page can seek past it instead of using an OFFSET.
+public class PageCursor {
+
+    private static final String SEPARATOR = ":";
+
+    private final String sortBy;
+    private final String sortDir;
+    private final long id;
+    private final String sortValue;
+
+    public PageCursor(String sortBy, String sortDir, long id, String sortValue) {
+        this.sortBy = sortBy;
+        this.sortDir = sortDir.toLowerCase();
+        this.id = id;
+        this.sortValue = sortValue;
+    }
+
+    public static PageCursor decode(String cursor){
+        try{
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // the sort value goes last so it may contain the separator itself
+            String[] parts = decoded.split(SEPARATOR, 4);
+            if(parts.length != 4){
+                throw new BlogAPIException(HttpStatus.BAD_REQUEST,"Invalid page cursor");
+            }
+            return new PageCursor(parts[0], parts[1], Long.parseLong(parts[2]), parts[3]);
+        }catch (IllegalArgumentException ex){
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST,"Invalid page cursor");
+        }
+    }
+
+    public String encode(){
+        String raw = sortBy + SEPARATOR + sortDir + SEPARATOR + id + SEPARATOR + sortValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // a cursor is only valid for the listing order it was issued for
+    public boolean matches(String sortBy, String sortDir){
+        return this.sortBy.equals(sortBy) && this.sortDir.equalsIgnoreCase(sortDir);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getSortValue() {
+        return sortValue;
+    }
+}
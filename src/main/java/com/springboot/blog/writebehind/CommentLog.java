@@ -0,0 +1,290 @@
+package com.springboot.blog.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append only log of accepted comments in numbered segment files, one "crc32 json" line per comment.
+// A single writer thread appends everything that queued up since its last write, forces it to disk once
+// and only then completes the appends, so one fsync is shared by all comments accepted meanwhile. A group
+// that fails is cut off the segment again, so the log only ever holds acknowledged comments and at most
+// one torn line at its very end. A segment is deleted once every comment in it is in the database and a
+// newer segment is active.
+class CommentLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentLog.class);
+    private static final String PREFIX = "comments-";
+    private static final String SUFFIX = ".log";
+    private static final int MAX_GROUP = 1000;
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final long segmentBytes;
+
+    private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    // comments per segment that are not in the database yet
+    private final Map<Long, AtomicInteger> uncommitted = new ConcurrentHashMap<>();
+    private volatile long activeSegment;
+    private volatile boolean running;
+    private FileChannel channel;
+    private long activeBytes;
+    // end of the last durable group while a failed group could not be cut off yet
+    private long truncateTo = -1;
+    private Thread writer;
+
+    CommentLog(Path directory, ObjectMapper objectMapper, long segmentBytes) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.segmentBytes = segmentBytes;
+    }
+
+    // reads the comments left by the previous run, in order, and starts appending to a new segment.
+    // Only the last line of the last segment can be a write torn by a crash, it was never acknowledged.
+    // A line that fails its checksum anywhere else is corruption, opening fails instead of dropping the
+    // acknowledged comments after it.
+    List<PendingComment> open() throws IOException {
+        Files.createDirectories(directory);
+        List<PendingComment> comments = new ArrayList<>();
+        List<Path> files = segmentFiles();
+        long lastSegment = 0;
+        for(int i = 0; i < files.size(); i++){
+            Path file = files.get(i);
+            long segment = segmentOf(file);
+            lastSegment = Math.max(lastSegment, segment);
+            int count = 0;
+            try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+                String line = reader.readLine();
+                int lineNumber = 1;
+                while(line != null){
+                    String next = reader.readLine();
+                    PendingComment comment = parse(line);
+                    if(comment == null){
+                        if(next != null || i < files.size() - 1){
+                            throw new IOException("Comment log segment " + file + " is corrupt at line " + lineNumber);
+                        }
+                        logger.warn("Ignoring the torn end of comment log segment {}", file);
+                        break;
+                    }
+                    comment.setSegment(segment);
+                    comments.add(comment);
+                    count++;
+                    line = next;
+                    lineNumber++;
+                }
+            }
+            if(count == 0){
+                Files.delete(file);
+            }else{
+                uncommitted.put(segment, new AtomicInteger(count));
+            }
+        }
+        openSegment(lastSegment + 1);
+        running = true;
+        writer = new Thread(this::writeLoop, "comment-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        return comments;
+    }
+
+    // completes once the comment is on disk
+    CompletableFuture<Void> append(PendingComment comment){
+        Append append = new Append(comment);
+        appends.add(append);
+        return append.durable;
+    }
+
+    // the comments are in the database, segments left without pending comments are deleted
+    void committed(List<PendingComment> comments){
+        for(PendingComment comment : comments){
+            AtomicInteger pending = uncommitted.get(comment.getSegment());
+            if(pending != null && pending.decrementAndGet() == 0 && comment.getSegment() != activeSegment){
+                deleteSegment(comment.getSegment(), pending);
+            }
+        }
+    }
+
+    void close(){
+        running = false;
+        try{
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            channel.close();
+        }catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }catch (IOException ex){
+            logger.warn("Could not close the comment log", ex);
+        }
+        AtomicInteger pending = uncommitted.get(activeSegment);
+        if(pending == null || pending.get() == 0){
+            deleteSegment(activeSegment, pending);
+        }
+    }
+
+    private void writeLoop(){
+        while(running || !appends.isEmpty()){
+            List<Append> group = new ArrayList<>();
+            try{
+                Append first = appends.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null){
+                    continue;
+                }
+                group.add(first);
+            }catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+                return;
+            }
+            appends.drainTo(group, MAX_GROUP - 1);
+            try{
+                writeGroup(group);
+                group.forEach(append -> append.durable.complete(null));
+            }catch (IOException | RuntimeException ex){
+                logger.error("Could not write {} comments to the comment log", group.size(), ex);
+                group.forEach(append -> append.durable.completeExceptionally(ex));
+            }
+        }
+    }
+
+    // a group is written to one segment, the segment only rolls over between groups
+    private void writeGroup(List<Append> group) throws IOException {
+        truncate();
+        if(activeBytes >= segmentBytes){
+            rollSegment();
+        }
+        long start = activeBytes;
+        try{
+            for(Append append : group){
+                write(append.comment);
+            }
+            channel.force(false);
+        }catch (IOException | RuntimeException ex){
+            // the lines of the failed group are cut off before any later group is acknowledged after them
+            truncateTo = start;
+            try{
+                truncate();
+            }catch (IOException truncateFailure){
+                ex.addSuppressed(truncateFailure);
+            }
+            throw ex;
+        }
+        // counted once durable, a failed append never keeps its segment from being released
+        uncommitted.computeIfAbsent(activeSegment, segment -> new AtomicInteger()).addAndGet(group.size());
+    }
+
+    private void write(PendingComment comment) throws IOException {
+        comment.setSegment(activeSegment);
+        byte[] json = objectMapper.writeValueAsBytes(comment);
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        byte[] line = (Long.toHexString(crc.getValue()) + " " + new String(json, StandardCharsets.UTF_8) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while(buffer.hasRemaining()){
+            activeBytes += channel.write(buffer);
+        }
+    }
+
+    // cuts the segment back to its last durable group, retried before every group until it succeeds
+    private void truncate() throws IOException {
+        if(truncateTo < 0){
+            return;
+        }
+        channel.truncate(truncateTo);
+        channel.force(false);
+        activeBytes = truncateTo;
+        truncateTo = -1;
+    }
+
+    // everything in the old segment was forced with its group
+    private void rollSegment() throws IOException {
+        channel.close();
+        long previous = activeSegment;
+        openSegment(previous + 1);
+        AtomicInteger pending = uncommitted.get(previous);
+        if(pending == null || pending.get() == 0){
+            deleteSegment(previous, pending);
+        }
+    }
+
+    private PendingComment parse(String line){
+        int separator = line.indexOf(' ');
+        if(separator < 0){
+            return null;
+        }
+        byte[] json = line.substring(separator + 1).getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        if(!line.substring(0, separator).equals(Long.toHexString(crc.getValue()))){
+            return null;
+        }
+        try{
+            return objectMapper.readValue(json, PendingComment.class);
+        }catch (IOException ex){
+            return null;
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        channel = FileChannel.open(pathOf(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        activeBytes = channel.size();
+        activeSegment = segment;
+    }
+
+    // the first thread to remove the counter deletes the file
+    private void deleteSegment(long segment, AtomicInteger pending){
+        if(pending != null && !uncommitted.remove(segment, pending)){
+            return;
+        }
+        try{
+            Files.deleteIfExists(pathOf(segment));
+        }catch (IOException ex){
+            logger.warn("Could not delete comment log segment {}", segment, ex);
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try(Stream<Path> files = Files.list(directory)){
+            return files.filter(file -> file.getFileName().toString().startsWith(PREFIX)
+                            && file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted((a, b) -> Long.compare(segmentOf(a), segmentOf(b)))
+                    .toList();
+        }
+    }
+
+    private Path pathOf(long segment){
+        return directory.resolve(PREFIX + String.format("%020d", segment) + SUFFIX);
+    }
+
+    private static long segmentOf(Path file){
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static class Append {
+        private final PendingComment comment;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private Append(PendingComment comment) {
+            this.comment = comment;
+        }
+    }
+}
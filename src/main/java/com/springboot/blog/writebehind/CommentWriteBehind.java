@@ -0,0 +1,199 @@
+package com.springboot.blog.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.blog.exception.BlogAPIException;
+import com.springboot.blog.exception.ResourceNotFoundException;
+import com.springboot.blog.payload.CommentDto;
+import com.springboot.blog.repository.PostRepository;
+import com.springboot.blog.service.CommentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Opt-in (app.comments.write-behind.enabled=true) comment creation off the request thread. A request only
+// checks that the post exists, appends the comment to the CommentLog and gets 202 with the client id
+// once the line is on disk. A single batcher thread writes the queued comments in grouped transactions
+// and then releases them from the log. After a crash the comments still in the log are queued again on
+// startup, comments.client_id keeps those that were already written from being inserted twice.
+@Component
+@ConditionalOnProperty(name = "app.comments.write-behind.enabled", havingValue = "true")
+public class CommentWriteBehind implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommentWriteBehind.class);
+    private static final long MAX_BACKOFF = 5000;
+
+    private final BlockingQueue<PendingComment> queue = new LinkedBlockingQueue<>();
+    // accepted comments not in the database yet, bounded by queueCapacity for new requests
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean running;
+    private Thread batcher;
+    private CommentLog commentLog;
+
+    private CommentService commentService;
+    private PostRepository postRepository;
+    private int queueCapacity;
+    private int batchSize;
+    private long appendTimeout;
+
+    public CommentWriteBehind(CommentService commentService, PostRepository postRepository, ObjectMapper objectMapper,
+                              @Value("${app.comments.write-behind.log-directory:comment-log}") String logDirectory,
+                              @Value("${app.comments.write-behind.segment-bytes:16777216}") long segmentBytes,
+                              @Value("${app.comments.write-behind.queue-capacity:10000}") int queueCapacity,
+                              @Value("${app.comments.write-behind.batch-size:500}") int batchSize,
+                              @Value("${app.comments.write-behind.append-timeout-milliseconds:2000}") long appendTimeout) {
+        this.commentService = commentService;
+        this.postRepository = postRepository;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.appendTimeout = appendTimeout;
+        this.commentLog = new CommentLog(Path.of(logDirectory), objectMapper, segmentBytes);
+    }
+
+    public CommentDto accept(long postId, CommentDto commentDto){
+        if(!postRepository.existsById(postId)){
+            throw new ResourceNotFoundException("Post","id",postId);
+        }
+        if(inFlight.incrementAndGet() > queueCapacity){
+            inFlight.decrementAndGet();
+            throw new BlogAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Too many comments waiting to be written, retry later");
+        }
+        PendingComment comment = new PendingComment(UUID.randomUUID().toString(), postId, commentDto.getName(),
+                commentDto.getEmail(), commentDto.getBody(), 0);
+        try{
+            commentLog.append(comment).get(appendTimeout, TimeUnit.MILLISECONDS);
+        }catch (ExecutionException | TimeoutException ex){
+            // a late write may still reach the log, the comment is then written after the next restart
+            inFlight.decrementAndGet();
+            throw new BlogAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Comment could not be stored, retry later");
+        }catch (InterruptedException ex){
+            inFlight.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new BlogAPIException(HttpStatus.SERVICE_UNAVAILABLE, "Comment could not be stored, retry later");
+        }
+        queue.add(comment);
+
+        CommentDto accepted = new CommentDto();
+        accepted.setClientId(comment.getClientId());
+        accepted.setName(comment.getName());
+        accepted.setEmail(comment.getEmail());
+        accepted.setBody(comment.getBody());
+        return accepted;
+    }
+
+    @Override
+    public void start() {
+        List<PendingComment> replayed;
+        try{
+            replayed = commentLog.open();
+        }catch (IOException ex){
+            throw new UncheckedIOException("Could not open the comment log", ex);
+        }
+        if(!replayed.isEmpty()){
+            logger.info("Writing {} comments left in the comment log by the previous run", replayed.size());
+        }
+        inFlight.addAndGet(replayed.size());
+        queue.addAll(replayed);
+        running = true;
+        batcher = new Thread(this::batchLoop, "comment-batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+    }
+
+    // what is still queued stays in the log and is written after the next start
+    @Override
+    public void stop() {
+        running = false;
+        try{
+            batcher.join(TimeUnit.SECONDS.toMillis(30));
+        }catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
+        commentLog.close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // before the web server starts accepting requests and stopped after it
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void batchLoop(){
+        while(running){
+            List<PendingComment> batch = new ArrayList<>(batchSize);
+            try{
+                PendingComment first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null){
+                    continue;
+                }
+                batch.add(first);
+            }catch (InterruptedException ex){
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            if(write(batch)){
+                commentLog.committed(batch);
+                inFlight.addAndGet(-batch.size());
+            }
+        }
+    }
+
+    // false when stopped before the batch could be written, it is then left in the log
+    private boolean write(List<PendingComment> batch){
+        long backoff = 100;
+        while(true){
+            try{
+                commentService.createPendingComments(batch);
+                return true;
+            }catch (DataIntegrityViolationException ex){
+                if(batch.size() == 1){
+                    logger.error("Dropping comment {} of post {}, it can not be stored", batch.get(0).getClientId(),
+                            batch.get(0).getPostId(), ex);
+                    return true;
+                }
+                // find the comment the database rejects, the others are written one by one
+                for(PendingComment comment : batch){
+                    if(!write(List.of(comment))){
+                        return false;
+                    }
+                }
+                return true;
+            }catch (RuntimeException ex){
+                if(!running){
+                    return false;
+                }
+                logger.warn("Could not write {} comments, retrying in {} ms", batch.size(), backoff, ex);
+                try{
+                    Thread.sleep(backoff);
+                }catch (InterruptedException interrupted){
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.springboot.blog.writebehind;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// a comment that was accepted and logged but is not in the database yet, one line of the CommentLog
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PendingComment {
+    // returned to the client with the 202, stored in comments.client_id
+    private String clientId;
+    private long postId;
+    private String name;
+    private String email;
+    private String body;
+
+    // log segment the comment was written to
+    @JsonIgnore
+    private long segment;
+}
@@ -0,0 +1,80 @@
+package com.springboot.blog.benchmark;
+
+import com.springboot.blog.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Per token cost of validate/generate, rebuilding the key and parser on each call ("before")
+// versus the precomputed key and shared parser in JwtTokenProvider ("after").
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//           -Dexec.mainClass=com.springboot.blog.benchmark.JwtTokenProviderBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "daf66e01593f61a15b857cf433aae03a005812b31234e149036bcc8dee755dbb";
+    private static final long EXPIRATION = 604800000L;
+
+    private JwtTokenProvider jwtTokenProvider;
+    private Authentication authentication;
+    private String token;
+
+    @Setup
+    public void setUp(){
+        jwtTokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(jwtTokenProvider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenProvider, "jwtExpirationDate", EXPIRATION);
+        ReflectionTestUtils.setField(jwtTokenProvider, "jwtRotationGracePeriod", EXPIRATION);
+        jwtTokenProvider.init();
+        authentication = new UsernamePasswordAuthenticationToken("admin@gmail.com", null);
+        token = jwtTokenProvider.generateToken(authentication);
+    }
+
+    @Benchmark
+    public Claims validateBefore(){
+        return Jwts.parserBuilder().setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET))).build()
+                .parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Claims validateAfter(){
+        return jwtTokenProvider.getClaims(token);
+    }
+
+    @Benchmark
+    public String generateBefore(){
+        Date currentDate = new Date();
+        return Jwts.builder().setSubject(authentication.getName())
+                .setIssuedAt(currentDate)
+                .setExpiration(new Date(currentDate.getTime() + EXPIRATION))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+    }
+
+    @Benchmark
+    public String generateAfter(){
+        return jwtTokenProvider.generateToken(authentication);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtTokenProviderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
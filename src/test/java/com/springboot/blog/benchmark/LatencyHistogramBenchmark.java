@@ -0,0 +1,44 @@
+package com.springboot.blog.benchmark;
+
+import com.springboot.blog.diagnostics.LatencyHistogram;
+import com.springboot.blog.diagnostics.RequestTimings;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost of timing a phase and of recording a latency, shared by 4 threads. Run with "-prof gc" to check
+// that both stay at 0 B/op ("gc.alloc.rate.norm").
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//           -Dexec.mainClass=com.springboot.blog.benchmark.LatencyHistogramBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LatencyHistogramBenchmark {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Benchmark
+    public void record(){
+        histogram.record(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+
+    @Benchmark
+    public void timePhase(){
+        RequestTimings.end(RequestTimings.Phase.MAPPING, RequestTimings.begin());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LatencyHistogramBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,125 @@
+package com.springboot.blog.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Closed loop load generator for comparing the platform thread and the virtual thread request executor.
+// Start the app once as is and once with --app.threads.virtual.enabled=true (Java 21), then run against
+// each and compare the throughput and p99 columns. Start it with --app.rate-limit.enabled=false as well, all
+// the clients share one address and would be held to the anonymous limit:
+//   mvn test-compile exec:java -Dexec.classpathScope=test
+//       -Dexec.mainClass=com.springboot.blog.benchmark.LoadTestHarness
+//       -Dload.label=virtual -Dload.concurrency=400 -Dload.seconds=30
+// Every scenario runs on its own for load.seconds with load.concurrency clients that each send the next
+// request as soon as the previous one is answered.
+public class LoadTestHarness {
+
+    private static final String BASE_URL = System.getProperty("load.baseUrl", "http://localhost:5000");
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 200);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 30);
+    private static final int MAX_POST_ID = Integer.getInteger("load.maxPostId", 100);
+    private static final String USERNAME = System.getProperty("load.username", "admin");
+    private static final String PASSWORD = System.getProperty("load.password", "admin");
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, Supplier<HttpRequest>> scenarios = new LinkedHashMap<>();
+        scenarios.put("GET post by id", () -> get("/api/v1/posts/" + randomPostId()));
+        scenarios.put("GET posts page", () -> get("/api/v1/posts?pageSize=10&pageNo=" + ThreadLocalRandom.current().nextInt(10)));
+        scenarios.put("GET post comments", () -> get("/api/v1/post/" + randomPostId() + "/comments"));
+        // BCrypt bound
+        scenarios.put("POST login", () -> HttpRequest.newBuilder(URI.create(BASE_URL + "/api/v1/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"usernameOrEmail\":\"" + USERNAME + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .timeout(Duration.ofSeconds(30))
+                .build());
+
+        System.out.printf("%s, %d clients, %d s per scenario%n", System.getProperty("load.label", "run"),
+                CONCURRENCY, SECONDS);
+        System.out.printf("%-20s %10s %8s %10s %10s %10s%n", "scenario", "req/s", "errors", "p50 ms", "p99 ms", "max ms");
+        for(Map.Entry<String, Supplier<HttpRequest>> scenario : scenarios.entrySet()){
+            run(scenario.getKey(), scenario.getValue());
+        }
+    }
+
+    private static void run(String name, Supplier<HttpRequest> requests) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        AtomicLong errors = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        for(int i = 0; i < CONCURRENCY; i++){
+            // each client records into its own array, merged once the run is over
+            long[][] own = {new long[1024]};
+            int[] count = {0};
+            synchronized (latencies){
+                latencies.add(null);
+            }
+            int slot = i;
+            clients.execute(() -> {
+                while(System.nanoTime() < deadline){
+                    long start = System.nanoTime();
+                    try{
+                        HttpResponse<Void> response = CLIENT.send(requests.get(), HttpResponse.BodyHandlers.discarding());
+                        if(response.statusCode() >= 400){
+                            errors.incrementAndGet();
+                        }
+                    }catch (Exception ex){
+                        errors.incrementAndGet();
+                    }
+                    if(count[0] == own[0].length){
+                        own[0] = Arrays.copyOf(own[0], own[0].length * 2);
+                    }
+                    own[0][count[0]++] = System.nanoTime() - start;
+                }
+                synchronized (latencies){
+                    latencies.set(slot, Arrays.copyOf(own[0], count[0]));
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(SECONDS + 60L, TimeUnit.SECONDS);
+
+        long[] all = latencies.stream().filter(l -> l != null).flatMapToLong(Arrays::stream).sorted().toArray();
+        if(all.length == 0){
+            System.out.printf("%-20s no responses%n", name);
+            return;
+        }
+        System.out.printf("%-20s %10.1f %8d %10.1f %10.1f %10.1f%n", name, all.length / (double) SECONDS, errors.get(),
+                millis(percentile(all, 0.50)), millis(percentile(all, 0.99)), millis(all[all.length - 1]));
+    }
+
+    private static HttpRequest get(String path){
+        return HttpRequest.newBuilder(URI.create(BASE_URL + path)).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private static long randomPostId(){
+        return 1 + ThreadLocalRandom.current().nextInt(MAX_POST_ID);
+    }
+
+    private static long percentile(long[] sorted, double percentile){
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos){
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,100 @@
+package com.springboot.blog.benchmark;
+
+import com.springboot.blog.entity.Category;
+import com.springboot.blog.entity.Comment;
+import com.springboot.blog.entity.Post;
+import com.springboot.blog.mapper.CommentMapperImpl;
+import com.springboot.blog.mapper.PostMapper;
+import com.springboot.blog.mapper.PostMapperImpl;
+import com.springboot.blog.payload.PostDto;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Post -> PostDto throughput of the reflective ModelMapper the services used before versus the
+// generated PostMapper, for one page of posts. "mappedObjects" is the per post throughput.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//           -Dexec.mainClass=com.springboot.blog.benchmark.PostMapperBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostMapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int pageSize;
+
+    private List<Post> posts;
+    private ModelMapper modelMapper;
+    private PostMapper postMapper;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class MappedObjects {
+        public long mappedObjects;
+    }
+
+    @Setup
+    public void setUp(){
+        modelMapper = new ModelMapper();
+        postMapper = new PostMapperImpl(new CommentMapperImpl());
+
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("Java");
+        posts = new ArrayList<>();
+        for(long i = 1; i <= pageSize; i++){
+            Post post = new Post();
+            post.setId(i);
+            post.setTitle("Post title " + i);
+            post.setDescription("Post description " + i);
+            post.setContent("Post content ".repeat(50));
+            post.setCategory(category);
+            Set<Comment> comments = new HashSet<>();
+            for(long j = 1; j <= 3; j++){
+                Comment comment = new Comment();
+                comment.setId(i * 10 + j);
+                comment.setName("name");
+                comment.setEmail("reader@gmail.com");
+                comment.setBody("comment body " + j);
+                comment.setPost(post);
+                comments.add(comment);
+            }
+            post.setComments(comments);
+            posts.add(post);
+        }
+    }
+
+    @Benchmark
+    public void modelMapper(MappedObjects counter, Blackhole blackhole){
+        for(Post post : posts){
+            blackhole.consume(modelMapper.map(post, PostDto.class));
+        }
+        counter.mappedObjects += posts.size();
+    }
+
+    @Benchmark
+    public void generatedMapper(MappedObjects counter, Blackhole blackhole){
+        for(Post post : posts){
+            blackhole.consume(postMapper.mapToDto(post));
+        }
+        counter.mappedObjects += posts.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PostMapperBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,57 @@
+package com.springboot.blog.benchmark;
+
+import com.springboot.blog.security.RateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Per request cost of the rate limit check, for one hot client shared by all threads (every check
+// contends on the same bucket) and for requests spread over many clients.
+// Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+//           -Dexec.mainClass=com.springboot.blog.benchmark.RateLimiterBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimiterBenchmark {
+
+    private static final int CLIENTS = 10_000;
+
+    private RateLimiter rateLimiter;
+    private String[] clients;
+
+    @Setup
+    public void setUp(){
+        // limits high enough that the benchmark measures the check, not rejections
+        rateLimiter = new RateLimiter(true, 1e6, 1_000_000_000, 1e6, 1_000_000_000, 1e6, 1_000_000_000, 100_000,
+                new SimpleMeterRegistry());
+        clients = new String[CLIENTS];
+        for(int i = 0; i < CLIENTS; i++){
+            clients[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+    }
+
+    @Benchmark
+    public long oneClient(){
+        return rateLimiter.tryAcquire(RateLimiter.Route.ANONYMOUS, clients[0]);
+    }
+
+    @Benchmark
+    public long manyClients(){
+        return rateLimiter.tryAcquire(RateLimiter.Route.ANONYMOUS, clients[ThreadLocalRandom.current().nextInt(CLIENTS)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
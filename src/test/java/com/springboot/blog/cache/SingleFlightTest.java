@@ -0,0 +1,119 @@
+package com.springboot.blog.cache;
+
+import com.springboot.blog.exception.BlogAPIException;
+import com.springboot.blog.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Concurrent loads of one key must run the loader once and hand its result, or its exception, to every caller.
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void tearDown(){
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentLoadsOfOneKeyRunTheLoaderOnce() throws Exception {
+        SingleFlight.Group<Long, String> group = new SingleFlight(5000, meterRegistry).group("posts");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = loadConcurrently(group, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "post";
+        });
+        release.countDown();
+
+        for(Future<String> result : results){
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("post");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("single.flight.collapsed").counter().count()).isEqualTo(CALLERS - 1);
+        // the next miss loads again
+        assertThat(group.load(1L, () -> "reloaded")).isEqualTo("reloaded");
+    }
+
+    @Test
+    void everyWaiterGetsTheLoaderException() throws Exception {
+        SingleFlight.Group<Long, String> group = new SingleFlight(5000, meterRegistry).group("posts");
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = loadConcurrently(group, () -> {
+            await(release);
+            throw new ResourceNotFoundException("Post", "id", 1L);
+        });
+        release.countDown();
+
+        for(Future<String> result : results){
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(ResourceNotFoundException.class);
+        }
+    }
+
+    @Test
+    void waitersGiveUpAfterTheTimeout() throws Exception {
+        SingleFlight.Group<Long, String> group = new SingleFlight(50, meterRegistry).group("posts");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch loading = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> group.load(1L, () -> {
+            loading.countDown();
+            await(release);
+            return "post";
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+
+        assertThatThrownBy(() -> group.load(1L, () -> "not loaded"))
+                .isInstanceOfSatisfying(BlogAPIException.class,
+                        ex -> assertThat(ex.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("post");
+        assertThat(meterRegistry.get("single.flight.timeouts").counter().count()).isEqualTo(1);
+    }
+
+    private List<Future<String>> loadConcurrently(SingleFlight.Group<Long, String> group,
+                                                  Supplier<String> loader){
+        List<Future<String>> results = new ArrayList<>();
+        for(int i = 0; i < CALLERS; i++){
+            results.add(executor.submit(() -> group.load(1L, loader)));
+        }
+        // the leader is held in the loader until released, so every other caller ends up waiting on it
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(meterRegistry.get("single.flight.collapsed").counter().count() < CALLERS - 1
+                && System.nanoTime() - deadline < 0){
+            Thread.onSpinWait();
+        }
+        return results;
+    }
+
+    private static void await(CountDownLatch latch){
+        try{
+            latch.await(5, TimeUnit.SECONDS);
+        }catch (InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.springboot.blog.config;
+
+import com.springboot.blog.payload.CategoryDto;
+import com.springboot.blog.security.JwtTokenProvider;
+import com.springboot.blog.service.CategoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Two embedded databases stand in for the primary and a replica that has not caught up yet: read-only
+// service calls must see the replica, except for a client that wrote within the sticky window.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never",
+        "app.post-statistics.reconcile-on-startup=false",
+        "app.rate-limit.enabled=false",
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "app.datasource.replica.username=sa",
+        "app.datasource.replica.password=",
+        "app.datasource.replica.sticky-window-milliseconds=" + ReadReplicaRoutingTest.STICKY_WINDOW
+})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingTest {
+
+    static final long STICKY_WINDOW = 500;
+    private static final long CATEGORY_ID = 1;
+    private static final long USER_ID = 1000;
+
+    @Autowired
+    private CategoryService categoryService;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    // the replica gets the schema hibernate created on the primary, before the startup jobs read from it
+    @TestConfiguration
+    static class ReplicaSchema {
+        @EventListener(ContextRefreshedEvent.class)
+        void copySchema(ContextRefreshedEvent event){
+            ApplicationContext context = event.getApplicationContext();
+            JdbcTemplate primary = new JdbcTemplate(context.getBean("primaryDataSource", DataSource.class));
+            JdbcTemplate replica = new JdbcTemplate(context.getBean("replicaDataSource", DataSource.class));
+            replica.execute("DROP ALL OBJECTS");
+            List<String> schema = primary.queryForList("SCRIPT NODATA", String.class);
+            schema.stream().filter(statement -> !statement.startsWith("CREATE USER")).forEach(replica::execute);
+        }
+    }
+
+    @BeforeEach
+    void setUp(){
+        JdbcTemplate primary = new JdbcTemplate(primaryDataSource);
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        primary.update("DELETE FROM categories");
+        replica.update("DELETE FROM categories");
+        primary.update("INSERT INTO categories (id, name, description, version) VALUES (?, 'primary', 'd', 0)", CATEGORY_ID);
+        replica.update("INSERT INTO categories (id, name, description, version) VALUES (?, 'replica', 'd', 0)", CATEGORY_ID);
+    }
+
+    @AfterEach
+    void tearDown(){
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readsGoToTheReplicaUntilTheClientWrites() throws InterruptedException {
+        signIn("alice");
+        assertThat(categoryName()).isEqualTo("replica");
+
+        CategoryDto update = new CategoryDto();
+        update.setName("written");
+        update.setDescription("d");
+        categoryService.updateCategory(update, CATEGORY_ID);
+        // alice reads her own write from the primary, bob still reads the replica
+        assertThat(categoryName()).isEqualTo("written");
+        signIn("bob");
+        assertThat(categoryName()).isEqualTo("replica");
+
+        Thread.sleep(STICKY_WINDOW * 2);
+        signIn("alice");
+        assertThat(categoryName()).isEqualTo("replica");
+    }
+
+    @Test
+    void entriesCachedFromALaggingReplicaAreReloadedOnceItCatchesUp(){
+        signIn("bob");
+        assertThat(categoryService.getCategory(CATEGORY_ID, null).getName()).isEqualTo("replica");
+
+        // the replica applies a write done on the primary
+        new JdbcTemplate(replicaDataSource).update("UPDATE categories SET name = 'caught up', version = 1 WHERE id = ?", CATEGORY_ID);
+        String versionTag = categoryService.getCategoryVersion(CATEGORY_ID).orElseThrow().getTag();
+        assertThat(categoryService.getCategory(CATEGORY_ID, versionTag).getName()).isEqualTo("caught up");
+    }
+
+    // through the web layer, where open session in view keeps one EntityManager for the whole request
+    @Test
+    void aWriteAfterAReadOnlyTransactionInTheSameRequestGoesToThePrimary() throws Exception {
+        JdbcTemplate primary = new JdbcTemplate(primaryDataSource);
+        primary.update("DELETE FROM user_roles WHERE user_id = ?", USER_ID);
+        primary.update("DELETE FROM users WHERE id = ?", USER_ID);
+        primary.update("INSERT INTO users (id, name, username, email, password) " +
+                "VALUES (?, 'admin', 'admin', 'admin@gmail.com', 'unused')", USER_ID);
+        primary.update("INSERT INTO user_roles (user_id, role_id) SELECT ?, id FROM roles WHERE name = 'ROLE_ADMIN'",
+                USER_ID);
+        String token = jwtTokenProvider.generateToken(new UsernamePasswordAuthenticationToken(
+                "admin@gmail.com", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+
+        // deleteCategory checks existsById in a read-only transaction before the cascade delete
+        mockMvc.perform(delete("/api/v1/categories/{id}", CATEGORY_ID).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        String count = "SELECT COUNT(*) FROM categories WHERE id = ?";
+        assertThat(primary.queryForObject(count, Long.class, CATEGORY_ID)).isZero();
+        assertThat(new JdbcTemplate(replicaDataSource).queryForObject(count, Long.class, CATEGORY_ID)).isOne();
+    }
+
+    private String categoryName(){
+        return (String) categoryService.getCategoryFields(CATEGORY_ID, Set.of("name")).get("name");
+    }
+
+    private static void signIn(String username){
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                username, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+}
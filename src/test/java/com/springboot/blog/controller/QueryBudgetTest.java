@@ -0,0 +1,130 @@
+package com.springboot.blog.controller;
+
+import com.springboot.blog.diagnostics.QueryStatsResponseAdvice;
+import com.springboot.blog.entity.Category;
+import com.springboot.blog.entity.Comment;
+import com.springboot.blog.entity.Post;
+import com.springboot.blog.repository.CategoryRepository;
+import com.springboot.blog.repository.CommentRepository;
+import com.springboot.blog.repository.PostRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Every covered endpoint must stay within its @QueryBudget, run no statement shape repeatedly and run
+// the same statements for any page size.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query-budget;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.sql.init.mode=never",
+        "app.post-statistics.reconcile-on-startup=false",
+        "app.rate-limit.enabled=false",
+        "app.query-budget.response-headers=true"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryBudgetTest {
+
+    private static final int POSTS = 30;
+    private static final int COMMENTS_PER_POST = 3;
+    private static final int REPEATED_STATEMENT_THRESHOLD = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private CommentRepository commentRepository;
+
+    private long categoryId;
+    private long postId;
+    private long commentId;
+
+    @BeforeAll
+    void setUp(){
+        Category category = new Category();
+        category.setName("Java");
+        category.setDescription("Java posts");
+        categoryId = categoryRepository.save(category).getId();
+
+        List<Comment> comments = new ArrayList<>();
+        for(int i = 0; i < POSTS; i++){
+            Post post = new Post();
+            post.setTitle("Post title " + i);
+            post.setDescription("Post description " + i);
+            post.setContent("Post content " + i);
+            post.setCategory(category);
+            post = postRepository.save(post);
+            postId = post.getId();
+            for(int j = 0; j < COMMENTS_PER_POST; j++){
+                Comment comment = new Comment();
+                comment.setName("name");
+                comment.setEmail("reader@gmail.com");
+                comment.setBody("comment body " + j);
+                comment.setPost(post);
+                comments.add(comment);
+            }
+        }
+        commentId = commentRepository.saveAll(comments).get(comments.size() - 1).getId();
+    }
+
+    @Test
+    void postListingsStayWithinBudgetForAnyPageSize() throws Exception {
+        for(String view : List.of("", "&view=summary", "&fields=id,title", "&cursor=")){
+            assertThat(statementsWithinBudget("/api/v1/posts?pageSize=5" + view))
+                    .isEqualTo(statementsWithinBudget("/api/v1/posts?pageSize=25" + view));
+        }
+    }
+
+    @Test
+    void postEndpointsStayWithinBudget() throws Exception {
+        statementsWithinBudget("/api/v1/posts/" + postId);
+        statementsWithinBudget("/api/v1/posts/" + postId + "?fields=id,title");
+        statementsWithinBudget("/api/v1/posts/category/" + categoryId);
+        statementsWithinBudget("/api/v1/posts/category/" + categoryId + "?view=summary");
+        statementsWithinBudget("/api/v1/posts/category/" + categoryId + "?fields=id,title");
+        statementsWithinBudget("/api/v1/posts/popular");
+        statementsWithinBudget("/api/v1/posts/trending");
+    }
+
+    @Test
+    void commentEndpointsStayWithinBudget() throws Exception {
+        statementsWithinBudget("/api/v1/post/" + postId + "/comments");
+        statementsWithinBudget("/api/v1/post/" + postId + "/comments?fields=id,body");
+        statementsWithinBudget("/api/v1/post/" + postId + "/comments?cursor=&pageSize=2");
+        statementsWithinBudget("/api/v1/posts/" + postId + "/comments/" + commentId);
+        statementsWithinBudget("/api/v1/posts/" + postId + "/comments/" + commentId + "?fields=id,body");
+    }
+
+    private int statementsWithinBudget(String url) throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(get(url)).andReturn().getResponse();
+        assertThat(response.getStatus()).as(url).isEqualTo(200);
+        assertThat(response.getHeader(QueryStatsResponseAdvice.BUDGET_HEADER)).as(url + " has a budget").isNotNull();
+
+        int statements = Integer.parseInt(response.getHeader(QueryStatsResponseAdvice.STATEMENTS_HEADER));
+        assertThat(statements).as(url + " statements")
+                .isLessThanOrEqualTo(Integer.parseInt(response.getHeader(QueryStatsResponseAdvice.BUDGET_HEADER)));
+        String repeated = response.getHeader(QueryStatsResponseAdvice.REPEATED_HEADER);
+        if(repeated != null){
+            assertThat(Integer.parseInt(repeated)).as(url + " runs the same statement repeatedly")
+                    .isLessThan(REPEATED_STATEMENT_THRESHOLD);
+        }
+        return statements;
+    }
+}
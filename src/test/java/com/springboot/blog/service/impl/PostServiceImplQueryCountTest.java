@@ -0,0 +1,165 @@
+package com.springboot.blog.service.impl;
+
+import com.springboot.blog.cache.CompressedPostBodyCache;
+import com.springboot.blog.cache.SingleFlight;
+import com.springboot.blog.config.CacheConfig;
+import com.springboot.blog.entity.Category;
+import com.springboot.blog.entity.Comment;
+import com.springboot.blog.entity.Post;
+import com.springboot.blog.exception.BlogAPIException;
+import com.springboot.blog.jobs.JobRegistry;
+import com.springboot.blog.mapper.CommentMapperImpl;
+import com.springboot.blog.mapper.PostMapperImpl;
+import com.springboot.blog.payload.CommentDto;
+import com.springboot.blog.repository.FieldProjectionRepository;
+import com.springboot.blog.search.PostSearchIndex;
+import com.springboot.blog.statistics.PostStatistics;
+import com.springboot.blog.statistics.PostTrending;
+import com.springboot.blog.writebehind.PendingComment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The listing endpoints must run a fixed number of statements whatever the page size.
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.sql.init.mode=never"
+})
+@Import({PostServiceImpl.class, CommentServiceImpl.class, PostMapperImpl.class, CommentMapperImpl.class,
+        CacheConfig.class, PostSearchIndex.class, FieldProjectionRepository.class,
+        CompressedPostBodyCache.class, SimpleMeterRegistry.class, PostStatistics.class,
+        PostTrending.class, CascadeDelete.class, JobRegistry.class, SingleFlight.class})
+@ImportAutoConfiguration({ValidationAutoConfiguration.class, JacksonAutoConfiguration.class})
+class PostServiceImplQueryCountTest {
+
+    private static final int POSTS = 30;
+    private static final int COMMENTS_PER_POST = 3;
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PostServiceImpl postService;
+    @Autowired
+    private CommentServiceImpl commentService;
+
+    private Statistics statistics;
+    private Long categoryId;
+    private Long postId;
+    private Long commentId;
+
+    @BeforeEach
+    void setUp(){
+        Category category = new Category();
+        category.setName("Java");
+        category.setDescription("Java posts");
+        entityManager.persist(category);
+        categoryId = category.getId();
+
+        for(int i = 0; i < POSTS; i++){
+            Post post = new Post();
+            post.setTitle("Post title " + i);
+            post.setDescription("Post description " + i);
+            post.setContent("Post content " + i);
+            post.setCategory(category);
+            entityManager.persist(post);
+            postId = post.getId();
+            for(int j = 0; j < COMMENTS_PER_POST; j++){
+                Comment comment = new Comment();
+                comment.setName("name");
+                comment.setEmail("reader@gmail.com");
+                comment.setBody("comment body " + j);
+                comment.setPost(post);
+                entityManager.persist(comment);
+                commentId = comment.getId();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllPostRunsSameStatementsForAnyPageSize(){
+        // page query, count query and one query for the comments of the page
+        assertThat(statementsFor(() -> postService.getAllPost(0, 5, "id", "asc"))).isEqualTo(3);
+        entityManager.clear();
+        assertThat(statementsFor(() -> postService.getAllPost(0, 25, "id", "asc"))).isEqualTo(3);
+    }
+
+    @Test
+    void getAllPostByCursorRunsSameStatementsForAnyPageSize(){
+        assertThat(statementsFor(() -> postService.getAllPostByCursor("", 5, "id", "asc", false))).isEqualTo(2);
+        entityManager.clear();
+        assertThat(statementsFor(() -> postService.getAllPostByCursor("", 25, "id", "asc", false))).isEqualTo(2);
+    }
+
+    @Test
+    void getAllPostSummariesCountsCommentsInTheDatabase(){
+        // page query with the comment count subquery and count query
+        assertThat(statementsFor(() -> postService.getAllPostSummaries(0, 25, "id", "asc"))).isEqualTo(2);
+        assertThat(postService.getAllPostSummaries(0, 5, "id", "asc").getContent())
+                .allSatisfy(summary -> assertThat(summary.getCommentCount()).isEqualTo(COMMENTS_PER_POST));
+        assertThat(statementsFor(() -> postService.getPostSummariesByCategory(categoryId))).isEqualTo(2);
+    }
+
+    @Test
+    void getPostByCategoryRunsTwoStatements(){
+        // category lookup and posts with their comments
+        assertThat(statementsFor(() -> postService.getPostByCategory(categoryId))).isEqualTo(2);
+    }
+
+    @Test
+    void getCommentsByPostIdDoesNotLoadThePost(){
+        assertThat(statementsFor(() -> commentService.getCommentsByPostId(postId))).isEqualTo(1);
+    }
+
+    @Test
+    void commentByIdOperationsCheckOwnershipInTheSameStatement(){
+        CommentDto request = new CommentDto();
+        request.setName("name");
+        request.setEmail("reader@gmail.com");
+        request.setBody("updated comment body");
+
+        assertThat(statementsFor(() -> commentService.getCommentById(postId, commentId))).isEqualTo(1);
+        // the post row is not locked by comment writes
+        assertThat(statementsFor(() -> commentService.updateComment(postId, commentId, request))).isEqualTo(1);
+        assertThatThrownBy(() -> commentService.getCommentById(postId - 1, commentId))
+                .isInstanceOf(BlogAPIException.class);
+        assertThat(statementsFor(() -> commentService.deleteComment(postId, commentId))).isEqualTo(1);
+    }
+
+    @Test
+    void commentsReplayedFromTheLogAreWrittenOnce(){
+        PendingComment pendingComment = new PendingComment("client-1", postId, "name", "reader@gmail.com",
+                "comment body", 0);
+        assertThat(commentService.createPendingComments(List.of(pendingComment))).isEqualTo(1);
+        // written before the crash and replayed after the restart
+        assertThat(commentService.createPendingComments(List.of(pendingComment))).isEqualTo(0);
+    }
+
+    private long statementsFor(Runnable call){
+        statistics.clear();
+        call.run();
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,136 @@
+package com.springboot.blog.writebehind;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Every acknowledged comment must come back after a restart, and nothing that was not acknowledged.
+class CommentLogTest {
+
+    private static final long SEGMENT_BYTES = 1024 * 1024;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void uncommittedCommentsAreReplayedInOrder() throws Exception {
+        CommentLog log = new CommentLog(directory, new ObjectMapper(), SEGMENT_BYTES);
+        log.open();
+        for(String clientId : List.of("a", "b", "c")){
+            log.append(comment(clientId)).get(5, TimeUnit.SECONDS);
+        }
+        log.close();
+
+        assertThat(clientIdsOf(replay())).containsExactly("a", "b", "c");
+    }
+
+    @Test
+    void aTornLastLineIsIgnored() throws Exception {
+        CommentLog log = new CommentLog(directory, new ObjectMapper(), SEGMENT_BYTES);
+        log.open();
+        log.append(comment("a")).get(5, TimeUnit.SECONDS);
+        log.close();
+        Files.writeString(lastSegment(), "1f2e3d {\"clientId\":\"b\",\"po", StandardOpenOption.APPEND);
+
+        assertThat(clientIdsOf(replay())).containsExactly("a");
+    }
+
+    @Test
+    void aCorruptLineBeforeTheEndFailsTheReplay() throws Exception {
+        CommentLog log = new CommentLog(directory, new ObjectMapper(), SEGMENT_BYTES);
+        log.open();
+        log.append(comment("a")).get(5, TimeUnit.SECONDS);
+        log.close();
+        Path segment = lastSegment();
+        List<String> lines = Files.readAllLines(segment, StandardCharsets.UTF_8);
+        Files.write(segment, List.of("1f2e3d {\"clientId\":\"b\",\"po", lines.get(0)), StandardCharsets.UTF_8);
+
+        // the acknowledged comment after the damaged line is not silently dropped
+        assertThatThrownBy(() -> new CommentLog(directory, new ObjectMapper(), SEGMENT_BYTES).open())
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void aFailedGroupIsCutOffTheLog() throws Exception {
+        CommentLog log = new CommentLog(directory, new FailingObjectMapper(), SEGMENT_BYTES);
+        // queued before the writer starts, the three are written as one group that fails on the second
+        List<CompletableFuture<Void>> group = List.of(log.append(comment("a")), log.append(comment("fail")),
+                log.append(comment("b")));
+        log.open();
+        for(CompletableFuture<Void> append : group){
+            assertThatThrownBy(() -> append.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        }
+        PendingComment accepted = comment("c");
+        log.append(accepted).get(5, TimeUnit.SECONDS);
+        log.close();
+
+        assertThat(clientIdsOf(replay())).containsExactly("c");
+    }
+
+    @Test
+    void failedAppendsDoNotKeepTheirSegment() throws Exception {
+        CommentLog log = new CommentLog(directory, new FailingObjectMapper(), SEGMENT_BYTES);
+        log.open();
+        assertThatThrownBy(() -> log.append(comment("fail")).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class);
+        PendingComment accepted = comment("a");
+        log.append(accepted).get(5, TimeUnit.SECONDS);
+        log.committed(List.of(accepted));
+        log.close();
+
+        assertThat(segments()).isEmpty();
+    }
+
+    // what the next run reads from the log
+    private List<PendingComment> replay() throws IOException {
+        CommentLog log = new CommentLog(directory, new ObjectMapper(), SEGMENT_BYTES);
+        List<PendingComment> comments = log.open();
+        log.close();
+        return comments;
+    }
+
+    private Path lastSegment() throws IOException {
+        List<Path> segments = segments();
+        return segments.get(segments.size() - 1);
+    }
+
+    private List<Path> segments() throws IOException {
+        try(Stream<Path> files = Files.list(directory)){
+            return files.sorted().toList();
+        }
+    }
+
+    private static PendingComment comment(String clientId){
+        return new PendingComment(clientId, 1, "name", "reader@gmail.com", "comment body", 0);
+    }
+
+    private static List<String> clientIdsOf(List<PendingComment> comments){
+        return comments.stream().map(PendingComment::getClientId).toList();
+    }
+
+    // fails to serialize the comment with client id "fail", after the lines before it in the group are written
+    private static class FailingObjectMapper extends ObjectMapper {
+        @Override
+        public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+            if(value instanceof PendingComment comment && comment.getClientId().equals("fail")){
+                throw new JsonProcessingException("could not serialize") {};
+            }
+            return super.writeValueAsBytes(value);
+        }
+    }
+}